@@ -0,0 +1,92 @@
+package com.example.usagetracker.utils;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs LogMigrationJob against the Firestore emulator. Start it first with
+ * `firebase emulators:start --only firestore`; 10.0.2.2 is the host machine as seen from the Android emulator.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LogMigrationJobTest {
+    private static final int LEGACY_LOGS = 5;
+
+    private static FirebaseFirestore db;
+
+    @BeforeClass
+    public static void useEmulator() {
+        db = FirebaseFirestore.getInstance();
+        try {
+            db.useEmulator("10.0.2.2", 8080);
+        } catch (IllegalStateException e) {
+            // Already pointed at the emulator by an earlier test in this process
+        }
+    }
+
+    @Test
+    public void migratesInPagesAndResumesFromCheckpoint() throws Exception {
+        String userId = "migration-" + UUID.randomUUID();
+        seedLegacyLogs(userId);
+        LogMigrationJob job = new LogMigrationJob(db, userId, 2);
+
+        // Interrupted after the first page
+        assertEquals(2, (int) Tasks.await(job.runPages(1)));
+        DocumentSnapshot checkpoint = Tasks.await(job.getCheckpointRef().get());
+        assertEquals(userId + "-log1", checkpoint.getString("lastDocId"));
+        assertFalse(checkpoint.getBoolean("done"));
+
+        // Resumes after the checkpoint instead of starting over
+        assertEquals(3, (int) Tasks.await(job.runPages(Integer.MAX_VALUE)));
+        checkpoint = Tasks.await(job.getCheckpointRef().get());
+        assertTrue(checkpoint.getBoolean("done"));
+        assertEquals(LEGACY_LOGS, (long) checkpoint.getLong("migrated"));
+
+        for (int i = 0; i < LEGACY_LOGS; i++) {
+            DocumentSnapshot log = Tasks.await(db.collection(FirebaseHelper.LOGS_COLLECTION).document(userId + "-log" + i).get());
+            assertTrue(log.exists());
+            assertEquals("goal" + i, log.getString("activityId"));
+            assertNull(log.get("goalId"));
+            assertEquals(userId, log.getString("userId"));
+        }
+
+        // A finished migration does nothing
+        assertEquals(0, (int) Tasks.await(job.runPages(Integer.MAX_VALUE)));
+    }
+
+    private static void seedLegacyLogs(String userId) throws Exception {
+        WriteBatch batch = db.batch();
+        for (int i = 0; i < LEGACY_LOGS; i++) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("userId", userId);
+            data.put("goalId", "goal" + i);
+            data.put("activityName", "Shower");
+            data.put("usageAmount", 5.0 + i);
+            data.put("targetLimit", 10.0);
+            data.put("type", "Water");
+            data.put("timestamp", new Timestamp(new Date(1700000000000L + i * 60000L)));
+            data.put("ecoPointsEarned", i);
+            data.put("metGoal", true);
+            batch.set(db.collection(FirebaseHelper.USAGE_LOGS_COLLECTION).document(userId + "-log" + i), data);
+        }
+        Tasks.await(batch.commit());
+    }
+}
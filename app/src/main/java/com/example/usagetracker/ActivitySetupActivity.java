@@ -19,6 +19,7 @@ import androidx.appcompat.widget.Toolbar;
 import com.example.usagetracker.models.Goal;
 import com.example.usagetracker.models.User;
 import com.example.usagetracker.utils.FirebaseHelper;
+import com.example.usagetracker.utils.OnboardingDraft;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
@@ -171,10 +172,6 @@ public class ActivitySetupActivity extends AppCompatActivity {
             return;
         }
 
-        final int[] savedCount = {0};
-        final int[] failedCount = {0};
-        final int totalGoals = goals.size();
-
         FirebaseUser firebaseUser = auth.getCurrentUser();
         String uid = (firebaseUser != null) ? firebaseUser.getUid() : userId;
 
@@ -182,97 +179,32 @@ public class ActivitySetupActivity extends AppCompatActivity {
 
         Toast.makeText(this, "Saving activities...", Toast.LENGTH_SHORT).show();
 
-        for (int i = 0; i < goals.size(); i++) {
-            Goal goal = goals.get(i);
-            final int goalIndex = i;
-
-            Log.d("ActivitySetup", "Preparing to save goal " + (i+1) + ": " + goal.getActivityName());
-
-            java.util.HashMap<String, Object> activityData = new java.util.HashMap<>();
-            activityData.put("activityName", goal.getActivityName());
-            activityData.put("targetLimit", goal.getTargetLimit());
-            activityData.put("type", goal.getType());
-            activityData.put("frequency", goal.getFrequency());
-            activityData.put("unit", goal.getUnit());
-            activityData.put("userId", uid);
-
-            Log.d("ActivitySetup", "Calling Firestore add() for goal " + (i+1));
-
-            com.google.firebase.firestore.FirebaseFirestore.getInstance()
-                    .collection("activities")
-                    .add(activityData)
-                    .addOnSuccessListener(documentReference -> {
-                        savedCount[0]++;
-                        Log.d("ActivitySetup", "✓ SUCCESS for goal " + (goalIndex+1) + ": " + savedCount[0] + "/" + totalGoals + " saved");
-
-                        if (savedCount[0] + failedCount[0] == totalGoals) {
-                            Log.d("ActivitySetup", "!!! All goals processed! Calling updateUserProfile() !!!");
-                            runOnUiThread(() -> updateUserProfile());
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        failedCount[0]++;
-                        Log.e("ActivitySetup", "✗ FAILURE for goal " + (goalIndex+1) + ": " + e.getMessage(), e);
-
-                        if (savedCount[0] + failedCount[0] == totalGoals) {
-                            Log.d("ActivitySetup", "All goals processed (with errors). Saved: " + savedCount[0] + ", Failed: " + failedCount[0]);
-                            if (savedCount[0] > 0) {
-                                runOnUiThread(() -> updateUserProfile());
-                            } else {
-                                Toast.makeText(ActivitySetupActivity.this,
-                                        "All activities failed to save. Error: " + e.getMessage(),
-                                        Toast.LENGTH_LONG).show();
-                            }
-                        }
-                    });
-        }
-
-        Log.d("ActivitySetup", "=== END saveGoalsToFirestore (all add() calls initiated) ===");
+        // The household and goals staged on the earlier screens land with the activities and the
+        // setupComplete flag, so a failed save leaves nothing half-written
+        OnboardingDraft draft = new OnboardingDraft(this);
+        List<String> goalsToSave = selectedGoals.isEmpty() ? draft.getSelectedGoals(uid) : selectedGoals;
+        firebaseHelper.commitOnboarding(uid, draft.getHousehold(uid), goals, goalsToSave, task -> {
+            if (task.isSuccessful()) {
+                draft.clear();
+                Log.d("ActivitySetup", "✓ Saved household, " + goals.size() + " goals and setupComplete");
+                Toast.makeText(ActivitySetupActivity.this, "Setup complete!", Toast.LENGTH_SHORT).show();
+                openDashboard(uid);
+            } else {
+                Log.e("ActivitySetup", "✗ Failed to save goals", task.getException());
+                Toast.makeText(ActivitySetupActivity.this,
+                        "Failed to save activities. Error: " + task.getException().getMessage(),
+                        Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
-    private void updateUserProfile() {
-        Log.d("ActivitySetup", "!!! updateUserProfile called !!!");
-
-        FirebaseUser firebaseUser = auth.getCurrentUser();
-        String finalUserId = (firebaseUser != null) ? firebaseUser.getUid() : userId;
-        Log.d("ActivitySetup", "Using userId for navigation: " + finalUserId);
-
-        // Create a map with ALL the user data we want to save
-        java.util.HashMap<String, Object> userData = new java.util.HashMap<>();
-        userData.put("setupComplete", true);
-        userData.put("hasCompletedQuestionnaire", true);
-        if (selectedGoals != null && !selectedGoals.isEmpty()) {
-            userData.put("selectedGoals", selectedGoals);
-        }
-
-        // Update or create user document with setupComplete flag
-        com.google.firebase.firestore.FirebaseFirestore.getInstance()
-                .collection("users")
-                .document(finalUserId)
-                .set(userData, com.google.firebase.firestore.SetOptions.merge())
-                .addOnSuccessListener(aVoid -> {
-                    Log.d("ActivitySetup", "✓✓✓ Setup complete! setupComplete=true saved to Firestore");
-                    Log.d("ActivitySetup", "Navigating to dashboard...");
-                    Toast.makeText(ActivitySetupActivity.this, "Setup complete!", Toast.LENGTH_SHORT).show();
-
-                    Intent intent = new Intent(ActivitySetupActivity.this, DashboardActivity.class);
-                    intent.putExtra("USER_ID", finalUserId);
-                    intent.putExtra("IS_TEST_MODE", false);
-                    intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
-                    startActivity(intent);
-                    finish();
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("ActivitySetup", "✗✗✗ Failed to update setupComplete flag", e);
-                    // Navigate anyway since activities are saved
-                    Toast.makeText(ActivitySetupActivity.this, "Activities saved! Continuing...", Toast.LENGTH_SHORT).show();
-                    Intent intent = new Intent(ActivitySetupActivity.this, DashboardActivity.class);
-                    intent.putExtra("USER_ID", finalUserId);
-                    intent.putExtra("IS_TEST_MODE", false);
-                    intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
-                    startActivity(intent);
-                    finish();
-                });
+    private void openDashboard(String finalUserId) {
+        Intent intent = new Intent(ActivitySetupActivity.this, DashboardActivity.class);
+        intent.putExtra("USER_ID", finalUserId);
+        intent.putExtra("IS_TEST_MODE", false);
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
+        startActivity(intent);
+        finish();
     }
 
     @Override
@@ -280,4 +212,4 @@ public class ActivitySetupActivity extends AppCompatActivity {
         onBackPressed();
         return true;
     }
-}
\ No newline at end of file
+}
@@ -13,13 +13,14 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
-import com.example.usagetracker.models.UsageLog;
 import com.example.usagetracker.models.User;
 import com.example.usagetracker.utils.FirebaseHelper;
+import com.example.usagetracker.utils.TimeRange;
+import com.example.usagetracker.utils.UsagePeriods;
 
-import java.util.Calendar;
+import java.util.Arrays;
+import java.util.Date;
 
 public class CheckInActivity extends AppCompatActivity {
     private TextView waterLastMonthTextView, waterCurrentMonthTextView, waterChangeTextView;
@@ -28,6 +29,7 @@ public class CheckInActivity extends AppCompatActivity {
     private FirebaseAuth auth;
     private FirebaseHelper firebaseHelper;
     private User currentUser;
+    private DocumentSnapshot householdDoc;
     private Button checkInButton;
 
     @Override
@@ -105,90 +107,30 @@ public class CheckInActivity extends AppCompatActivity {
                         Toast.makeText(CheckInActivity.this, "Invalid input", Toast.LENGTH_SHORT).show();
                         return;
                     }
-                    // Retrieve household document again
                     FirebaseUser firebaseUser = auth.getCurrentUser();
                     if (firebaseUser == null) {
                         Toast.makeText(CheckInActivity.this, "User not authenticated", Toast.LENGTH_SHORT).show();
                         dialog.dismiss();
                         return;
                     }
-                    firebaseHelper.getDb().collection("households")
-                            .whereArrayContains("residents", firebaseUser.getUid())
-                            .get()
-                            .addOnCompleteListener(task -> {
-                                if (task.isSuccessful() && task.getResult() != null && !task.getResult().isEmpty()) {
-                                    DocumentSnapshot householdDoc = task.getResult().getDocuments().get(0);
-                                    String mood;
-                                    if (householdDoc.contains("pastMonthWaterUsageMood") && householdDoc.get("pastMonthWaterUsageMood") != null)
-                                        mood = String.valueOf(householdDoc.get("pastMonthWaterUsageMood"));
-                                    else {
-                                        mood = "";
-                                    }
-                                    double prevMonthWater = householdDoc.getDouble("previousMonthWaterUsage") != null ? householdDoc.getDouble("previousMonthWaterUsage") : 0.0;
-                                    // Now, get the user document to update ecoPoints
-                                    firebaseHelper.getDb().collection("users").document(firebaseUser.getUid())
-                                            .get()
-                                            .addOnSuccessListener(userDoc -> {
-                                                double ecoPoints = 0.0;
-                                                if (userDoc.contains("ecoPoints") && userDoc.get("ecoPoints") != null)
-                                                    ecoPoints = userDoc.getDouble("ecoPoints");
-                                                boolean addedPoints;
-                                                boolean removedPoints;
-                                                if ("Bad".equals(mood)) {
-                                                    if (newWater <= prevMonthWater) {
-                                                        removedPoints = false;
-                                                        ecoPoints += 20.0;
-                                                        addedPoints = true;
-                                                    } else {
-                                                        addedPoints = false;
-                                                        ecoPoints -= 20.0;
-                                                        removedPoints = true;
-                                                    }
-                                                } else {
-                                                    removedPoints = false;
-                                                    addedPoints = false;
-                                                }
-                                                double finalEcoPoints = ecoPoints;
-                                                firebaseHelper.getDb().collection("users").document(firebaseUser.getUid())
-                                                        .update("ecoPoints", finalEcoPoints)
-                                                        .addOnSuccessListener(unused -> {
-                                                            // Update household currentMonthWaterUsage and currentMonthElectricityUsage
-                                                            householdDoc.getReference().update(
-                                                                    "currentMonthWaterUsage", newWater,
-                                                                    "currentMonthElectricityUsage", newElectric
-                                                            ).addOnSuccessListener(householdUpdate -> {
-                                                                // Now update UI and show toast on main thread
-                                                                runOnUiThread(() -> {
-                                                                    updateCurrentMonthData(newWater, newElectric);
-                                                                    calculateChanges(newWater, newElectric);
-                                                                    if (addedPoints) {
-                                                                        Toast.makeText(CheckInActivity.this, "Usage updated and points adjusted!", Toast.LENGTH_LONG).show();
-                                                                    } else if (removedPoints) {
-                                                                        Toast.makeText(CheckInActivity.this, "Usage updated and points adjusted!", Toast.LENGTH_LONG).show();
-                                                                    } else {
-                                                                        Toast.makeText(CheckInActivity.this, "Usage updated and points adjusted!", Toast.LENGTH_SHORT).show();
-                                                                    }
-                                                                });
-                                                                dialog.dismiss();
-                                                            }).addOnFailureListener(e -> {
-                                                                runOnUiThread(() -> Toast.makeText(CheckInActivity.this, "Failed to update usage in household.", Toast.LENGTH_SHORT).show());
-                                                                dialog.dismiss();
-                                                            });
-                                                        })
-                                                        .addOnFailureListener(e -> {
-                                                            Toast.makeText(CheckInActivity.this, "Failed to update ecoPoints.", Toast.LENGTH_SHORT).show();
-                                                            dialog.dismiss();
-                                                        });
-                                            })
-                                            .addOnFailureListener(e -> {
-                                                Toast.makeText(CheckInActivity.this, "Failed to retrieve user data.", Toast.LENGTH_SHORT).show();
-                                                dialog.dismiss();
-                                            });
-                                } else {
-                                    Toast.makeText(CheckInActivity.this, "No household found for this user", Toast.LENGTH_SHORT).show();
-                                    dialog.dismiss();
-                                }
-                            });
+                    // The household loaded with the screen is reused, so confirming is a single write
+                    if (householdDoc == null) {
+                        Toast.makeText(CheckInActivity.this, "No household found for this user", Toast.LENGTH_SHORT).show();
+                        dialog.dismiss();
+                        return;
+                    }
+                    confirm.setEnabled(false);
+                    firebaseHelper.checkIn(firebaseUser.getUid(), householdDoc, newWater, newElectric, task -> {
+                        if (task.isSuccessful()) {
+                            updateCurrentMonthData(newWater, newElectric);
+                            calculateChanges(newWater, newElectric);
+                            Toast.makeText(CheckInActivity.this, "Usage updated and points adjusted!",
+                                    task.getResult() != 0 ? Toast.LENGTH_LONG : Toast.LENGTH_SHORT).show();
+                        } else {
+                            Toast.makeText(CheckInActivity.this, "Failed to save check-in.", Toast.LENGTH_SHORT).show();
+                        }
+                        dialog.dismiss();
+                    });
                 }
             });
         });
@@ -208,7 +150,7 @@ public class CheckInActivity extends AppCompatActivity {
             .get()
             .addOnCompleteListener(task -> {
                 if (task.isSuccessful() && task.getResult() != null && !task.getResult().isEmpty()) {
-                    DocumentSnapshot householdDoc = task.getResult().getDocuments().get(0);
+                    householdDoc = task.getResult().getDocuments().get(0);
                     double prevWater = householdDoc.getDouble("previousMonthWaterUsage") != null ? householdDoc.getDouble("previousMonthWaterUsage") : 0.0;
                     double prevElectric = householdDoc.getDouble("previousMonthElectricityUsage") != null ? householdDoc.getDouble("previousMonthElectricityUsage") : 0.0;
                     double currWater = householdDoc.getDouble("currentMonthWaterUsage") != null ? householdDoc.getDouble("currentMonthWaterUsage") : 0.0;
@@ -247,39 +189,49 @@ public class CheckInActivity extends AppCompatActivity {
         FirebaseUser firebaseUser = auth.getCurrentUser();
         if (firebaseUser == null) return;
 
-        // Get current month start and end timestamps
-        Calendar calendar = Calendar.getInstance();
-        calendar.set(Calendar.DAY_OF_MONTH, 1);
-        calendar.set(Calendar.HOUR_OF_DAY, 0);
-        calendar.set(Calendar.MINUTE, 0);
-        calendar.set(Calendar.SECOND, 0);
-        calendar.set(Calendar.MILLISECOND, 0);
-        long startTimestamp = calendar.getTimeInMillis();
-
-        calendar.add(Calendar.MONTH, 1);
-        long endTimestamp = calendar.getTimeInMillis();
-
-        firebaseHelper.getUsageLogsForMonth(firebaseUser.getUid(), startTimestamp, endTimestamp, task -> {
-            if (task.isSuccessful() && task.getResult() != null) {
-                double waterUsage = 0.0;
-                double electricityUsage = 0.0;
-
-                for (QueryDocumentSnapshot document : task.getResult()) {
-                    UsageLog log = firebaseHelper.documentToUsageLog(document);
-                    if ("Water".equals(log.getType())) {
-                        waterUsage += log.getUsageAmount();
-                    } else if ("Electric".equals(log.getType())) {
-                        electricityUsage += log.getUsageAmount();
-                    }
+        // The month rollup already holds this month's per-type totals, so one read covers any history size
+        Date now = new Date();
+        String bucketId = UsagePeriods.monthBucketId(now);
+        firebaseHelper.getUsageRollup(firebaseUser.getUid(), bucketId, task -> {
+            if (task.isSuccessful()) {
+                DocumentSnapshot rollup = task.getResult();
+                if (rollup == null || !rollup.exists()) {
+                    loadCurrentMonthUsageFromAggregates(firebaseUser.getUid(), now);
+                    return;
                 }
+                checkRollupCoversMonth(firebaseUser.getUid(), now, rollup);
+            }
+        });
+    }
+
+    // Logs from before rollups existed are missing from the rollup; one count aggregate tells whether it is whole
+    private void checkRollupCoversMonth(String uid, Date now, DocumentSnapshot rollup) {
+        Long rolledUp = rollup.getLong("logCount");
+        long rolledUpLogs = rolledUp != null ? rolledUp : 0;
+        firebaseHelper.aggregateLogs(uid, null, null, TimeRange.monthOf(now)).addOnCompleteListener(countTask -> {
+            if (!countTask.isSuccessful() || countTask.getResult().getCount() != rolledUpLogs) {
+                loadCurrentMonthUsageFromAggregates(uid, now);
+                return;
+            }
+            final double waterUsage = firebaseHelper.getRollupTotal(rollup, "usage", "Water");
+            final double electricityUsage = firebaseHelper.getRollupTotal(rollup, "usage", "Electric");
 
-                // Create final copies for use in lambda
-                final double finalWaterUsage = waterUsage;
-                final double finalElectricityUsage = electricityUsage;
+            runOnUiThread(() -> {
+                updateCurrentMonthData(waterUsage, electricityUsage);
+                calculateChanges(waterUsage, electricityUsage);
+            });
+        });
+    }
 
+    // Months logged before rollups existed have no rollup document, or one that misses some logs; sum them on the server instead
+    private void loadCurrentMonthUsageFromAggregates(String uid, Date now) {
+        firebaseHelper.getUsageTotalsByType(uid, Arrays.asList("Water", "Electric"), TimeRange.monthOf(now), task -> {
+            if (task.isSuccessful()) {
+                final double waterUsage = task.getResult().get("Water");
+                final double electricityUsage = task.getResult().get("Electric");
                 runOnUiThread(() -> {
-                    updateCurrentMonthData(finalWaterUsage, finalElectricityUsage);
-                    calculateChanges(finalWaterUsage, finalElectricityUsage);
+                    updateCurrentMonthData(waterUsage, electricityUsage);
+                    calculateChanges(waterUsage, electricityUsage);
                 });
             }
         });
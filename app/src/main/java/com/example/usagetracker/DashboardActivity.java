@@ -5,33 +5,43 @@ import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.widget.NestedScrollView;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.example.usagetracker.models.Goal;
 import com.example.usagetracker.models.UsageLog;
 import com.example.usagetracker.models.User;
+import com.example.usagetracker.utils.DashboardSnapshotStore;
 import com.example.usagetracker.utils.FirebaseHelper;
+import com.example.usagetracker.utils.GoalPeriodTracker;
+import com.example.usagetracker.utils.LocalLogStore;
+import com.example.usagetracker.utils.LogMigrationJob;
+import com.example.usagetracker.utils.PendingLogFlusher;
+import com.example.usagetracker.utils.StreakEngine;
+import com.example.usagetracker.utils.TimeRange;
+import com.example.usagetracker.utils.UsageLogPager;
+import com.example.usagetracker.utils.UserProfileCache;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class DashboardActivity extends AppCompatActivity {
     private TextView ecoPointsTextView, streakTextView, userNameTextView;
     private RecyclerView activitiesRecyclerView;
+    private RecyclerView progressRecyclerView;
     private RecyclerView logsRecyclerView;
     private FloatingActionButton fabLogUsage;
     private FloatingActionButton fabView;
@@ -39,12 +49,23 @@ public class DashboardActivity extends AppCompatActivity {
     private FirebaseAuth auth;
     private FirebaseHelper firebaseHelper;
     private User currentUser;
+    // Derived from currentUser for display; the User itself is UserProfileCache's shared copy and stays untouched
+    private int shownEcoPoints;
+    private int shownStreak;
     private GoalsAdapter goalsAdapter;
     private List<String> goalStringsList;
     private boolean isTestMode = false;
     private String userId;
+    private ActivityProgressAdapter progressAdapter;
+    private List<Goal> progressGoals = new ArrayList<>();
+    private GoalPeriodTracker periodTracker = new GoalPeriodTracker();
     private LogsAdapter logsAdapter;
     private List<UsageLog> logsList = new ArrayList<>();
+    private UsageLogPager logsPager;
+    private DashboardSnapshotStore snapshotStore;
+    // Set on logout so the onStop that finish() triggers does not write the cleared snapshot back
+    private boolean loggingOut = false;
+    private static final int LOGS_PAGE_SIZE = 20;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -88,8 +109,41 @@ public class DashboardActivity extends AppCompatActivity {
 
         initializeViews();
         setupRecyclerViews();
-        loadUserData();
-        loadActivities();
+        snapshotStore = new DashboardSnapshotStore(this);
+        showLastKnownState();
+        PendingLogFlusher.start(this);
+        migrateLegacyLogs();
+        backfillHousehold();
+        // onResume, which always follows, does the first live load
+    }
+
+    // Paints the state saved when the dashboard was last left, so first paint never waits on the network
+    private void showLastKnownState() {
+        if (userId == null || isTestMode) return;
+
+        DashboardSnapshotStore.Snapshot snapshot = snapshotStore.read(userId);
+        if (snapshot == null) return;
+
+        userNameTextView.setText("Welcome, " + snapshot.name + "!");
+        ecoPointsTextView.setText(String.valueOf(snapshot.ecoPoints));
+        streakTextView.setText(snapshot.currentStreak + " days");
+        goalStringsList.addAll(snapshot.goals);
+        goalsAdapter.notifyDataSetChanged();
+        logsList.addAll(snapshot.logs);
+        logsAdapter.notifyDataSetChanged();
+    }
+
+    private void saveLastKnownState() {
+        if (userId == null || isTestMode || currentUser == null || loggingOut) return;
+
+        DashboardSnapshotStore.Snapshot snapshot = new DashboardSnapshotStore.Snapshot();
+        snapshot.userId = userId;
+        snapshot.name = currentUser.getName();
+        snapshot.ecoPoints = shownEcoPoints;
+        snapshot.currentStreak = shownStreak;
+        snapshot.goals.addAll(goalStringsList);
+        snapshot.logs.addAll(logsList.subList(0, Math.min(LOGS_PAGE_SIZE, logsList.size())));
+        snapshotStore.write(snapshot);
     }
 
     private void initializeViews() {
@@ -97,6 +151,7 @@ public class DashboardActivity extends AppCompatActivity {
         streakTextView = findViewById(R.id.streakTextView);
         userNameTextView = findViewById(R.id.userNameTextView);
         activitiesRecyclerView = findViewById(R.id.activitiesRecyclerView);
+        progressRecyclerView = findViewById(R.id.progressRecyclerView);
         logsRecyclerView = findViewById(R.id.logsRecyclerView);
         fabLogUsage = findViewById(R.id.fabLogUsage);
         fabView = findViewById(R.id.fabView);
@@ -144,88 +199,148 @@ public class DashboardActivity extends AppCompatActivity {
         activitiesRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         activitiesRecyclerView.setAdapter(goalsAdapter);
 
+        // Setup current-period progress RecyclerView (one row per activity)
+        progressAdapter = new ActivityProgressAdapter(progressGoals);
+        progressRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        progressRecyclerView.setAdapter(progressAdapter);
+
         // Setup Logs RecyclerView
         logsAdapter = new LogsAdapter(logsList);
         logsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         logsRecyclerView.setAdapter(logsAdapter);
-    }
 
-    private void loadActivities() {
-        if (userId == null) return;
-
-        firebaseHelper.getFirestore().collection("users").document(userId)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null && task.getResult().exists()) {
-                        List<String> selectedGoals = (List<String>) task.getResult().get("selectedGoals");
-                        goalStringsList.clear();
-                        if (selectedGoals != null) {
-                            goalStringsList.addAll(selectedGoals);
-                        }
-                        runOnUiThread(() -> goalsAdapter.notifyDataSetChanged());
+        // The logs list lives inside the NestedScrollView, so page on its scroll position.
+        // The next page is requested while the user is still a full screen away from the end.
+        NestedScrollView scrollView = findViewById(R.id.dashboardScrollView);
+        scrollView.setOnScrollChangeListener((NestedScrollView.OnScrollChangeListener)
+                (v, scrollX, scrollY, oldScrollX, oldScrollY) -> {
+                    if (logsPager == null || scrollY <= oldScrollY) return;
+                    View content = v.getChildAt(0);
+                    if (content != null && scrollY + 2 * v.getHeight() >= content.getHeight()) {
+                        logsPager.loadNextPage();
                     }
                 });
     }
 
-    // Loads the user's activity logs from the logs collection and displays them in the logsAdapter
-    private void loadUserLogs() {
-        if (userId == null) return;
-
-        firebaseHelper.getFirestore().collection("logs")
-                .whereEqualTo("userId", userId)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        logsList.clear();
-                        for (QueryDocumentSnapshot document : task.getResult()) {
-                            UsageLog log = firebaseHelper.documentToUsageLog(document);
-                            logsList.add(log);
-                        }
-                        runOnUiThread(() -> {
-                            logsAdapter.setLogs(logsList);
-                            logsAdapter.notifyDataSetChanged();
-                        });
-                    }
-                });
+    // Copies this user's old usageLogs documents into logs once; the checkpoint lets an interrupted run resume
+    private void migrateLegacyLogs() {
+        if (userId == null || isTestMode) return;
+        SharedPreferences prefs = getSharedPreferences("EcoLogPrefs", MODE_PRIVATE);
+        String doneKey = "logs_migrated_" + userId;
+        if (prefs.getBoolean(doneKey, false)) return;
+
+        String migratingUserId = userId;
+        new LogMigrationJob(firebaseHelper.getFirestore(), migratingUserId).run(task -> {
+            if (!task.isSuccessful()) return;
+            prefs.edit().putBoolean(doneKey, true).apply();
+            if (task.getResult() > 0) {
+                // Migrated logs can be older than the sync high-water mark, so pull the history again
+                LocalLogStore logStore = LocalLogStore.getInstance(this);
+                logStore.setHighWaterMark(migratingUserId, FirebaseHelper.LOGS_COLLECTION, 0);
+                logStore.setHistoryComplete(migratingUserId, FirebaseHelper.LOGS_COLLECTION, false);
+                loadUserLogs();
+            }
+        });
     }
 
-    private void loadCurrentUsage() {
-        if (userId == null || goalStringsList.isEmpty()) return;
+    // Points this user's household at the household ranking once, for households created before it existed
+    private void backfillHousehold() {
+        if (userId == null || isTestMode) return;
+        SharedPreferences prefs = getSharedPreferences("EcoLogPrefs", MODE_PRIVATE);
+        String doneKey = "household_backfilled_" + userId;
+        if (prefs.getBoolean(doneKey, false)) return;
 
-        // Get current period (today for daily, this week for weekly)
-        Calendar calendar = Calendar.getInstance();
-        long startTimestamp;
+        firebaseHelper.backfillUserHousehold(userId, task -> {
+            if (task.isSuccessful()) {
+                prefs.edit().putBoolean(doneKey, true).apply();
+            }
+        });
+    }
+
+    // Shows the first page of logs from the local store immediately, then syncs deltas from the logs collection
+    private void loadUserLogs() {
+        if (userId == null) return;
 
-        // For now, calculate for today (daily) or this week (weekly)
-        // We'll aggregate usage for each goal
-        Map<String, Double> usageMap = new HashMap<>();
+        LocalLogStore logStore = LocalLogStore.getInstance(this);
+        if (logsPager == null) {
+            logsPager = new UsageLogPager(logStore, firebaseHelper, userId, FirebaseHelper.LOGS_COLLECTION,
+                    LOGS_PAGE_SIZE, logsList, new UsageLogPager.Listener() {
+                @Override
+                public void onLogsReset() {
+                    logsAdapter.notifyDataSetChanged();
+                }
 
-        firebaseHelper.getUsageLogs(userId, task -> {
-            if (task.isSuccessful() && task.getResult() != null) {
-                for (QueryDocumentSnapshot document : task.getResult()) {
-                    UsageLog log = firebaseHelper.documentToUsageLog(document);
-                    String goalId = log.getGoalId();
+                @Override
+                public void onLogsAppended(int positionStart, int count) {
+                    logsAdapter.notifyItemRangeInserted(positionStart, count);
+                }
 
-                    // Check if log is within current period
-                    // Since we no longer have Goal objects, skip this part or adjust accordingly
-                    // Here we skip period check because we lack goal frequency info
-                    double current = usageMap.getOrDefault(goalId, 0.0);
-                    usageMap.put(goalId, current + log.getUsageAmount());
+                @Override
+                public void onPageFailed(Exception e) {
+                    Toast.makeText(DashboardActivity.this, "Failed to load more logs", Toast.LENGTH_SHORT).show();
                 }
+            });
+        }
+        logsPager.refresh();
+        firebaseHelper.syncUsageLogs(logStore, userId, task -> {
+            logsPager.refresh();
+            updateCurrentUsage();
+        });
+    }
 
-                runOnUiThread(() -> {
-                    // No progressAdapter to update now
-                });
+    // Loads the user's activities into the period tracker; a changed set is re-seeded with this week's logs
+    private void loadActivityGoals() {
+        if (userId == null || isTestMode) return;
+
+        firebaseHelper.getActivities(userId, task -> {
+            if (!task.isSuccessful() || task.getResult() == null) return;
+
+            List<Goal> goals = new ArrayList<>();
+            for (QueryDocumentSnapshot document : task.getResult()) {
+                goals.add(firebaseHelper.documentToGoal(document));
+            }
+            boolean reset = periodTracker.setGoals(goals);
+            progressGoals.clear();
+            progressGoals.addAll(goals);
+            // Local logs first, so logs still queued offline are counted too
+            updateCurrentUsage();
+            if (reset) {
+                feedWeekFromServer();
             }
         });
     }
 
-    private Goal findGoalById(String goalId) {
-        return null; // Removed as goalsList no longer exists
+    // The local copy may not reach back to the start of the week on a fresh install
+    private void feedWeekFromServer() {
+        firebaseHelper.getUsageLogsInRange(userId, TimeRange.weekOf(new Date()), 0, logsTask -> {
+            if (!logsTask.isSuccessful() || logsTask.getResult() == null) return;
+            List<UsageLog> weekLogs = new ArrayList<>();
+            for (QueryDocumentSnapshot document : logsTask.getResult()) {
+                weekLogs.add(firebaseHelper.documentToUsageLog(document));
+            }
+            Date now = new Date();
+            periodTracker.addLogs(weekLogs, now);
+            progressAdapter.setCurrentUsageMap(periodTracker.getCurrentTotals(now));
+        });
     }
 
-    private boolean isLogInCurrentPeriod(UsageLog log, Goal goal) {
-        return true; // Removed as goalsList and Goal objects no longer used
+    // Feeds the tracker only the local logs it has not seen yet and shows each activity's current-period usage
+    private void updateCurrentUsage() {
+        if (userId == null || progressGoals.isEmpty()) return;
+
+        Date now = new Date();
+        if (periodTracker.resetIfWindowsShifted(now)) {
+            // Time zone changed: the local feed below starts over from the week start, the server fills in older logs
+            feedWeekFromServer();
+        }
+        LocalLogStore logStore = LocalLogStore.getInstance(this);
+        long feedFrom = periodTracker.getFeedFromMillis(now);
+        logStore.onDisk(() -> logStore.getLogsInRange(userId, FirebaseHelper.LOGS_COLLECTION, feedFrom, Long.MAX_VALUE))
+                .addOnSuccessListener(logs -> {
+                    Date fedAt = new Date();
+                    periodTracker.addLogs(logs, fedAt);
+                    progressAdapter.setCurrentUsageMap(periodTracker.getCurrentTotals(fedAt));
+                });
     }
 
     private void loadUserData() {
@@ -238,6 +353,7 @@ public class DashboardActivity extends AppCompatActivity {
         // Set userId for logsAdapter and load logs immediately after userId assignment
         logsAdapter.setUserId(userId);
         loadUserLogs();
+        loadActivityGoals();
 
         // For test mode, create a dummy user immediately
         if (isTestMode) {
@@ -245,20 +361,56 @@ public class DashboardActivity extends AppCompatActivity {
             return;
         }
 
-        // Load from Firebase
-        firebaseHelper.getUser(userId, task -> {
-            if (task.isSuccessful() && task.getResult() != null && task.getResult().exists()) {
-                currentUser = firebaseHelper.documentToUser(task.getResult());
-                Long ecoPointsLong = task.getResult().getLong("ecoPoints");
-                int ecoPoints = ecoPointsLong != null ? ecoPointsLong.intValue() : 0;
-                runOnUiThread(() -> {
-                    ecoPointsTextView.setText(String.valueOf(ecoPoints));
-                    updateUI();
-                });
-            } else {
+        // Paint whatever profile this process already has; observeProfile keeps it current
+        User cached = UserProfileCache.getInstance().get(userId);
+        if (cached != null) {
+            showProfile(cached);
+        }
+    }
+
+    // One shared users/{uid} listener feeds the header and the goals list while the dashboard is visible
+    private void observeProfile() {
+        if (userId == null || isTestMode) return;
+
+        UserProfileCache.getInstance().observe(this, userId, user -> {
+            if (user == null) {
                 // If user doesn't exist, create test user as fallback
                 createTestUser();
+                return;
             }
+            showProfile(user);
+
+            // Pull any points still sitting in the counter shards into the displayed total
+            DocumentSnapshot snapshot = UserProfileCache.getInstance().getSnapshot(userId);
+            if (snapshot != null) {
+                firebaseHelper.foldEcoPointsIfStale(snapshot, foldTask -> {
+                    if (foldTask.isSuccessful() && foldTask.getResult() != null && currentUser != null) {
+                        shownEcoPoints = foldTask.getResult();
+                        runOnUiThread(this::updateUI);
+                    }
+                });
+                // Keeps the points ledger short; runs at most once a day
+                firebaseHelper.compactPointEventsIfStale(snapshot, compactTask -> { });
+            }
+        });
+    }
+
+    private void showProfile(User user) {
+        currentUser = user;
+        shownEcoPoints = user.getEcoPoints();
+        shownStreak = user.getCurrentStreak();
+        // The stored streak only changes when a log is saved, so a lapsed one is shown as 0
+        DocumentSnapshot profileDoc = UserProfileCache.getInstance().getSnapshot(userId);
+        if (profileDoc != null) {
+            shownStreak = StreakEngine.State.from(profileDoc).currentStreak(new Date());
+        }
+        goalStringsList.clear();
+        if (user.getSelectedGoals() != null) {
+            goalStringsList.addAll(user.getSelectedGoals());
+        }
+        runOnUiThread(() -> {
+            goalsAdapter.notifyDataSetChanged();
+            updateUI();
         });
     }
 
@@ -270,6 +422,8 @@ public class DashboardActivity extends AppCompatActivity {
         currentUser.setHasCompletedQuestionnaire(true);
         currentUser.setPreviousMonthWaterUsage(5000);
         currentUser.setPreviousMonthElectricityUsage(300);
+        shownEcoPoints = currentUser.getEcoPoints();
+        shownStreak = currentUser.getCurrentStreak();
 
         updateUI();
     }
@@ -277,17 +431,27 @@ public class DashboardActivity extends AppCompatActivity {
     private void updateUI() {
         if (currentUser != null) {
             userNameTextView.setText("Welcome, " + currentUser.getName() + "!");
-            ecoPointsTextView.setText(String.valueOf(currentUser.getEcoPoints()));
-            streakTextView.setText(currentUser.getCurrentStreak() + " days");
+            ecoPointsTextView.setText(String.valueOf(shownEcoPoints));
+            streakTextView.setText(shownStreak + " days");
         }
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        observeProfile();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        saveLastKnownState();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
-        loadUserData();
-        loadActivities();
-        loadUserLogs();
+        loadUserData(); // also loads the logs
     }
 
     @Override
@@ -305,6 +469,9 @@ public class DashboardActivity extends AppCompatActivity {
 
             // Sign out from Firebase
             auth.signOut();
+            UserProfileCache.getInstance().clear();
+            loggingOut = true;
+            snapshotStore.clear();
 
             Intent intent = new Intent(DashboardActivity.this, LoginActivity.class);
             intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
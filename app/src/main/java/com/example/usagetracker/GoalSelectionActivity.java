@@ -9,6 +9,8 @@ import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
+import com.example.usagetracker.utils.OnboardingDraft;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -67,6 +69,10 @@ public class GoalSelectionActivity extends AppCompatActivity {
                 return;
             }
 
+            if (userId != null) {
+                new OnboardingDraft(this).setSelectedGoals(userId, selectedGoals);
+            }
+
             Intent intent = new Intent(GoalSelectionActivity.this, ActivitySetupActivity.class);
             intent.putExtra("USER_ID", userId);
             intent.putExtra("IS_NEW_USER", isNewUser);
@@ -1,34 +1,61 @@
 package com.example.usagetracker;
 
 import android.os.Bundle;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.Spinner;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
-import com.example.usagetracker.models.User;
+import com.example.usagetracker.models.LeaderboardEntry;
 import com.example.usagetracker.utils.FirebaseHelper;
+import com.example.usagetracker.utils.UsagePeriods;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 
 public class LeaderboardActivity extends AppCompatActivity {
+    private static final int PAGE_SIZE = 25;
+    // Start loading the next page this many rows before either end of the list
+    private static final int PREFETCH_DISTANCE = 10;
+
     private RecyclerView leaderboardRecyclerView;
+    private Button myRankButton;
+    private Spinner periodSpinner;
+    private LinearLayoutManager layoutManager;
     private FirebaseAuth auth;
     private FirebaseHelper firebaseHelper;
     private LeaderboardAdapter adapter;
-    private List<User> usersList;
+    private List<LeaderboardEntry> entries;
+
+    // null for the lifetime ranking, a week or month bucket id, or FirebaseHelper.HOUSEHOLD_RANKING
+    private String rankingId;
+    private boolean showingMyRank = false;
+    private boolean loadingAbove = false;
+    private boolean loadingBelow = false;
+    private boolean endReached = false;
+    // Bumped whenever the list is replaced so pages requested for the old window are dropped
+    private int windowVersion = 0;
+    private String focusId;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_leaderboard);
-        
+
         // Setup toolbar with back button
         androidx.appcompat.widget.Toolbar toolbar = findViewById(R.id.toolbar);
         if (toolbar != null) {
@@ -43,34 +70,268 @@ public class LeaderboardActivity extends AppCompatActivity {
         firebaseHelper = new FirebaseHelper();
 
         leaderboardRecyclerView = findViewById(R.id.leaderboardRecyclerView);
-        usersList = new ArrayList<>();
-        adapter = new LeaderboardAdapter(usersList);
+        myRankButton = findViewById(R.id.myRankButton);
+        periodSpinner = findViewById(R.id.periodSpinner);
+        entries = new ArrayList<>();
+        adapter = new LeaderboardAdapter(entries);
 
-        leaderboardRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        layoutManager = new LinearLayoutManager(this);
+        leaderboardRecyclerView.setLayoutManager(layoutManager);
         leaderboardRecyclerView.setAdapter(adapter);
+        leaderboardRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (layoutManager.findFirstVisibleItemPosition() <= PREFETCH_DISTANCE) {
+                    loadAbove();
+                }
+                if (layoutManager.findLastVisibleItemPosition() >= entries.size() - 1 - PREFETCH_DISTANCE) {
+                    loadBelow();
+                }
+            }
+        });
+
+        myRankButton.setOnClickListener(v -> {
+            if (showingMyRank) {
+                loadLeaderboard();
+            } else {
+                loadMyRank();
+            }
+        });
 
-        loadLeaderboard();
+        ArrayAdapter<CharSequence> periodAdapter = ArrayAdapter.createFromResource(
+                this, R.array.leaderboard_periods, android.R.layout.simple_spinner_item);
+        periodAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        periodSpinner.setAdapter(periodAdapter);
+        // Fires once for the initial selection, which does the first load
+        periodSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                Date now = new Date();
+                if (position == 1) {
+                    rankingId = UsagePeriods.leaderboardWeekBucketId(now);
+                } else if (position == 2) {
+                    rankingId = UsagePeriods.leaderboardMonthBucketId(now);
+                } else if (position == 3) {
+                    rankingId = FirebaseHelper.HOUSEHOLD_RANKING;
+                } else {
+                    rankingId = null;
+                }
+                loadLeaderboard();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
     }
 
     private void loadLeaderboard() {
-        firebaseHelper.getTopUsers(50, task -> {
+        if (rankingId == null) {
+            loadTopLeaderboard();
+        } else {
+            loadRankingFirstPage();
+        }
+    }
+
+    // One document read: leaderboards/global is kept up to date as users fold their points
+    private void loadTopLeaderboard() {
+        firebaseHelper.getTopLeaderboard(task -> {
+            if (rankingId != null) return;
+            if (task.isSuccessful() && task.getResult() != null) {
+                DocumentSnapshot board = task.getResult();
+                if (!board.exists() || Boolean.TRUE.equals(board.getBoolean("stale"))) {
+                    rebuildLeaderboard();
+                    return;
+                }
+                showWindow(firebaseHelper.documentToLeaderboardEntries(board), 1, null);
+            } else {
+                Toast.makeText(LeaderboardActivity.this, "Failed to load leaderboard", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void rebuildLeaderboard() {
+        firebaseHelper.rebuildTopLeaderboard(task -> {
+            if (rankingId != null) return;
+            if (task.isSuccessful() && task.getResult() != null) {
+                showWindow(task.getResult(), 1, null);
+            } else {
+                Toast.makeText(LeaderboardActivity.this, "Failed to load leaderboard", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    // Weekly, monthly and household rankings are an indexed query over maintained point totals
+    private void loadRankingFirstPage() {
+        String requestedRanking = rankingId;
+        firebaseHelper.getRankingFirstPage(requestedRanking, PAGE_SIZE, task -> {
+            if (!requestedRanking.equals(rankingId)) return;
             if (task.isSuccessful() && task.getResult() != null) {
-                usersList.clear();
+                List<LeaderboardEntry> page = new ArrayList<>();
                 for (QueryDocumentSnapshot document : task.getResult()) {
-                    User user = firebaseHelper.documentToUser(document);
-                    usersList.add(user);
+                    page.add(firebaseHelper.documentToLeaderboardEntry(requestedRanking, document));
                 }
-                runOnUiThread(() -> adapter.notifyDataSetChanged());
+                showWindow(page, 1, null);
             } else {
                 Toast.makeText(LeaderboardActivity.this, "Failed to load leaderboard", Toast.LENGTH_SHORT).show();
             }
         });
     }
-    
+
+    // Shows the current user's rank with neighbours above and below, paging outwards from there
+    private void loadMyRank() {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        if (currentUser == null) return;
+
+        String userId = currentUser.getUid();
+        String requestedRanking = rankingId;
+        if (!FirebaseHelper.HOUSEHOLD_RANKING.equals(requestedRanking)) {
+            loadRankWindow(requestedRanking, userId);
+            return;
+        }
+
+        // Households are ranked by their own document, so find which one the user belongs to first
+        firebaseHelper.getUser(userId, task -> {
+            String householdId = task.isSuccessful() && task.getResult() != null
+                    ? task.getResult().getString("householdId") : null;
+            if (householdId == null) {
+                Toast.makeText(LeaderboardActivity.this, "No household found for this user", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            loadRankWindow(requestedRanking, householdId);
+        });
+    }
+
+    private void loadRankWindow(String requestedRanking, String entryId) {
+        firebaseHelper.getRankingEntry(requestedRanking, entryId, task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                Toast.makeText(LeaderboardActivity.this, "Failed to load your rank", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            DocumentSnapshot entry = task.getResult();
+            double points = firebaseHelper.getRankingPoints(requestedRanking, entry);
+            LeaderboardEntry me = firebaseHelper.documentToLeaderboardEntry(requestedRanking, entry);
+
+            firebaseHelper.getUserRank(requestedRanking, entryId, points, rankTask -> {
+                if (!Objects.equals(requestedRanking, rankingId)) return;
+                if (rankTask.isSuccessful() && rankTask.getResult() != null) {
+                    List<LeaderboardEntry> window = new ArrayList<>();
+                    window.add(me);
+                    showWindow(window, rankTask.getResult().intValue(), entryId);
+                } else {
+                    Toast.makeText(LeaderboardActivity.this, "Failed to load your rank", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
+    }
+
+    private void showWindow(List<LeaderboardEntry> rows, int firstRank, String focusId) {
+        runOnUiThread(() -> {
+            windowVersion++;
+            loadingAbove = false;
+            loadingBelow = false;
+            endReached = false;
+            showingMyRank = focusId != null;
+            this.focusId = focusId;
+            myRankButton.setText(showingMyRank ? R.string.top_of_leaderboard : R.string.my_rank);
+
+            entries.clear();
+            entries.addAll(rows);
+            adapter.setFirstRank(firstRank);
+            adapter.notifyDataSetChanged();
+            fillMissingNames(rows);
+
+            loadAbove();
+            loadBelow();
+        });
+    }
+
+    private void loadAbove() {
+        if (loadingAbove || entries.isEmpty() || adapter.getFirstRank() <= 1) return;
+
+        LeaderboardEntry first = entries.get(0);
+        int version = windowVersion;
+        loadingAbove = true;
+        firebaseHelper.getRankingPageAbove(rankingId, first.getPoints(), first.getId(), PAGE_SIZE, task -> runOnUiThread(() -> {
+            if (version != windowVersion) return;
+            loadingAbove = false;
+            if (!task.isSuccessful() || task.getResult() == null) {
+                Toast.makeText(LeaderboardActivity.this, "Failed to load leaderboard", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            List<LeaderboardEntry> page = newEntries(task.getResult());
+            if (page.isEmpty()) return;
+            entries.addAll(0, page);
+            adapter.setFirstRank(Math.max(1, adapter.getFirstRank() - page.size()));
+            adapter.notifyItemRangeInserted(0, page.size());
+            fillMissingNames(page);
+
+            if (focusId != null) {
+                layoutManager.scrollToPositionWithOffset(indexOfEntry(focusId), 0);
+                focusId = null;
+            }
+        }));
+    }
+
+    private void loadBelow() {
+        if (loadingBelow || endReached || entries.isEmpty()) return;
+
+        LeaderboardEntry last = entries.get(entries.size() - 1);
+        int version = windowVersion;
+        loadingBelow = true;
+        firebaseHelper.getRankingPageBelow(rankingId, last.getPoints(), last.getId(), PAGE_SIZE, task -> runOnUiThread(() -> {
+            if (version != windowVersion) return;
+            loadingBelow = false;
+            if (!task.isSuccessful() || task.getResult() == null) {
+                Toast.makeText(LeaderboardActivity.this, "Failed to load leaderboard", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            endReached = task.getResult().size() < PAGE_SIZE;
+            List<LeaderboardEntry> page = newEntries(task.getResult());
+            if (page.isEmpty()) return;
+            int positionStart = entries.size();
+            entries.addAll(page);
+            adapter.notifyItemRangeInserted(positionStart, page.size());
+            fillMissingNames(page);
+        }));
+    }
+
+    // Period entries can lack a name until that user folds; look the names up and redraw once they arrive
+    private void fillMissingNames(List<LeaderboardEntry> rows) {
+        int version = windowVersion;
+        firebaseHelper.resolveMissingNames(rows, task -> runOnUiThread(() -> {
+            if (version != windowVersion || !task.isSuccessful() || task.getResult() == null) return;
+            if (task.getResult() > 0) {
+                adapter.notifyDataSetChanged();
+            }
+        }));
+    }
+
+    // Rows not already in the list; the top-K board stores rounded points, so a cursor page can overlap it
+    private List<LeaderboardEntry> newEntries(QuerySnapshot snapshot) {
+        List<LeaderboardEntry> page = new ArrayList<>();
+        for (QueryDocumentSnapshot document : snapshot) {
+            if (indexOfEntry(document.getId()) < 0) {
+                page.add(firebaseHelper.documentToLeaderboardEntry(rankingId, document));
+            }
+        }
+        return page;
+    }
+
+    private int indexOfEntry(String id) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (id.equals(entries.get(i).getId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Override
     public boolean onSupportNavigateUp() {
         onBackPressed();
         return true;
     }
 }
-
@@ -8,15 +8,25 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.example.usagetracker.models.User;
+import com.example.usagetracker.models.LeaderboardEntry;
 
 import java.util.List;
 
 public class LeaderboardAdapter extends RecyclerView.Adapter<LeaderboardAdapter.LeaderboardViewHolder> {
-    private List<User> usersList;
+    private List<LeaderboardEntry> entries;
+    // Rank of entries.get(0); above 1 when the list is a window in the middle of the ranking
+    private int firstRank = 1;
 
-    public LeaderboardAdapter(List<User> usersList) {
-        this.usersList = usersList;
+    public LeaderboardAdapter(List<LeaderboardEntry> entries) {
+        this.entries = entries;
+    }
+
+    public int getFirstRank() {
+        return firstRank;
+    }
+
+    public void setFirstRank(int firstRank) {
+        this.firstRank = firstRank;
     }
 
     @NonNull
@@ -29,12 +39,12 @@ public class LeaderboardAdapter extends RecyclerView.Adapter<LeaderboardAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull LeaderboardViewHolder holder, int position) {
-        User user = usersList.get(position);
-        int rank = position + 1;
+        LeaderboardEntry entry = entries.get(position);
+        int rank = firstRank + position;
 
         holder.rankTextView.setText(String.valueOf(rank));
-        holder.nameTextView.setText(user.getName());
-        holder.pointsTextView.setText(String.valueOf(user.getEcoPoints()));
+        holder.nameTextView.setText(entry.getName());
+        holder.pointsTextView.setText(String.valueOf(Math.round(entry.getPoints())));
 
         // Highlight top 3
         if (rank == 1) {
@@ -43,12 +53,14 @@ public class LeaderboardAdapter extends RecyclerView.Adapter<LeaderboardAdapter.
             holder.rankTextView.setTextColor(holder.itemView.getContext().getResources().getColor(android.R.color.darker_gray, null));
         } else if (rank == 3) {
             holder.rankTextView.setTextColor(holder.itemView.getContext().getResources().getColor(android.R.color.holo_orange_light, null));
+        } else {
+            holder.rankTextView.setTextColor(holder.itemView.getContext().getResources().getColor(android.R.color.black, null));
         }
     }
 
     @Override
     public int getItemCount() {
-        return usersList.size();
+        return entries.size();
     }
 
     static class LeaderboardViewHolder extends RecyclerView.ViewHolder {
@@ -2,6 +2,7 @@ package com.example.usagetracker;
 
 import android.os.Bundle;
 import android.text.TextUtils;
+import android.util.Log;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
@@ -22,6 +23,9 @@ import com.example.usagetracker.models.UsageLog;
 import com.example.usagetracker.models.User;
 import com.example.usagetracker.utils.FirebaseHelper;
 import com.example.usagetracker.utils.GamificationHelper;
+import com.example.usagetracker.utils.LocalLogStore;
+import com.example.usagetracker.utils.PendingLogFlusher;
+import com.example.usagetracker.utils.UserProfileCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,6 +43,8 @@ public class LogUsageActivity extends AppCompatActivity {
     private List<String> activityIds = new ArrayList<>();
     // List to hold activity target limits
     private List<Double> activityTargetLimits = new ArrayList<>();
+    // List to hold activity types ("Water" or "Electric")
+    private List<String> activityTypes = new ArrayList<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -57,6 +63,7 @@ public class LogUsageActivity extends AppCompatActivity {
 
         auth = FirebaseAuth.getInstance();
         firebaseHelper = new FirebaseHelper();
+        PendingLogFlusher.start(this);
 
         activitySpinner = findViewById(R.id.activityDropdown);
         usageAmountEditText = findViewById(R.id.usageAmountEditText);
@@ -79,9 +86,13 @@ public class LogUsageActivity extends AppCompatActivity {
 
         if (userId == null) return;
 
+        // Usually already loaded by the dashboard
+        currentUser = UserProfileCache.getInstance().get(userId);
+        if (currentUser != null) return;
+
         firebaseHelper.getUser(userId, task -> {
-            if (task.isSuccessful() && task.getResult() != null) {
-                currentUser = firebaseHelper.documentToUser(task.getResult());
+            if (task.isSuccessful() && task.getResult() != null && task.getResult().exists()) {
+                currentUser = UserProfileCache.getInstance().prime(task.getResult());
             }
         });
     }
@@ -106,6 +117,7 @@ public class LogUsageActivity extends AppCompatActivity {
                         activitiesList.clear();
                         activityIds.clear();
                         activityTargetLimits.clear();
+                        activityTypes.clear();
                         for (QueryDocumentSnapshot document : task.getResult()) {
                             String activityName = document.getString("activityName");
                             if (activityName != null) {
@@ -115,6 +127,7 @@ public class LogUsageActivity extends AppCompatActivity {
                                 // Save targetLimit (may be null)
                                 Double targetLimit = document.getDouble("targetLimit");
                                 activityTargetLimits.add(targetLimit != null ? targetLimit : 0.0);
+                                activityTypes.add(document.getString("type"));
                             }
                         }
 
@@ -166,53 +179,52 @@ public class LogUsageActivity extends AppCompatActivity {
         try {
             double usageAmount = Double.parseDouble(usageAmountStr);
 
-            // Prepare log data
-            java.util.Map<String, Object> logData = new java.util.HashMap<>();
-            logData.put("userId", userId);
-            logData.put("activityId", activityIds.get(selectedPosition));
-            logData.put("activityName", selectedActivityName);
-            logData.put("usageAmount", usageAmount);
             // Add targetLimit for the selected activity
             Double targetLimit = activityTargetLimits.get(selectedPosition);
-            logData.put("targetLimit", targetLimit);
-
             java.util.Date currentDate = new java.util.Date();
-            logData.put("timestamp", new com.google.firebase.Timestamp(currentDate));
-
             boolean metGoal = usageAmount <= targetLimit;
-            logData.put("metGoal", metGoal);
-
-            firebaseHelper.getFirestore().collection("logs")
-                    .add(logData)
-                    .addOnCompleteListener(task -> {
-                        if (task.isSuccessful()) {
-                            Toast.makeText(LogUsageActivity.this, "Log saved successfully!", Toast.LENGTH_SHORT).show();
-
-                            // Update ecoPoints for user
-                            double targetLimitVal = activityTargetLimits.get(selectedPosition);
-                            double points;
-                            if (usageAmount <= targetLimitVal) {
-                                points = com.example.usagetracker.models.EcoPointsCalculator.showerPoints(usageAmount, targetLimitVal);
-                            } else {
-                                points = -5.0;
-                            }
+            String type = activityTypes.get(selectedPosition);
+
+            double points;
+            if (metGoal) {
+                points = com.example.usagetracker.models.EcoPointsCalculator.showerPoints(usageAmount, targetLimit);
+            } else {
+                points = -5.0;
+            }
 
-                            com.google.firebase.firestore.FirebaseFirestore.getInstance()
-                                .collection("users")
-                                .document(userId)
-                                .update("ecoPoints", com.google.firebase.firestore.FieldValue.increment(points))
-                                .addOnSuccessListener(aVoid -> {
-                                    Toast.makeText(LogUsageActivity.this, "EcoPoints updated!", Toast.LENGTH_SHORT).show();
-                                })
-                                .addOnFailureListener(e -> {
-                                    Toast.makeText(LogUsageActivity.this, "Failed to update EcoPoints", Toast.LENGTH_SHORT).show();
-                                });
+            // The document id doubles as the idempotency key: a retried flush can never write this log twice
+            DocumentReference logRef = firebaseHelper.getFirestore().collection(FirebaseHelper.LOGS_COLLECTION).document();
+            UsageLog localLog = new UsageLog(userId, activityIds.get(selectedPosition), selectedActivityName, usageAmount, type);
+            localLog.setLogId(logRef.getId());
+            localLog.setTargetLimit(targetLimit);
+            localLog.setTimestamp(new com.google.firebase.Timestamp(currentDate));
+            localLog.setMetGoal(metGoal);
+            localLog.setEcoPointsEarned((int) Math.round(points));
+
+            // Queue the log with its points; the flush writes the log, rollups and points shard together once online,
+            // and advances the streak, adding the streak bonus to these points if the log earns it
+            LocalLogStore logStore = LocalLogStore.getInstance(this);
+            // The write runs off the main thread; no second log can be queued while it does
+            saveLogButton.setEnabled(false);
+            logStore.onDisk(() -> {
+                logStore.enqueueLog(FirebaseHelper.LOGS_COLLECTION, localLog, points);
+                return null;
+            }).addOnCompleteListener(enqueueTask -> {
+                if (!enqueueTask.isSuccessful()) {
+                    Log.e("LogUsageActivity", "Failed to queue log", enqueueTask.getException());
+                    Toast.makeText(this, "Failed to save log", Toast.LENGTH_SHORT).show();
+                    saveLogButton.setEnabled(true);
+                    return;
+                }
+                firebaseHelper.flushPendingLogs(logStore, userId, task -> {
+                    if (!task.isSuccessful()) {
+                        Log.w("LogUsageActivity", "Log queued, will sync when back online", task.getException());
+                    }
+                });
 
-                            finish();
-                        } else {
-                            Toast.makeText(LogUsageActivity.this, "Failed to save log", Toast.LENGTH_SHORT).show();
-                        }
-                    });
+                Toast.makeText(this, "Log saved successfully!", Toast.LENGTH_SHORT).show();
+                finish();
+            });
         } catch (NumberFormatException e) {
             usageAmountEditText.setError("Please enter a valid number");
         }
@@ -17,6 +17,7 @@ import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.example.usagetracker.models.User;
 import com.example.usagetracker.utils.FirebaseHelper;
+import com.example.usagetracker.utils.UserProfileCache;
 
 public class LoginActivity extends AppCompatActivity {
     private EditText emailEditText, passwordEditText;
@@ -154,7 +155,8 @@ public class LoginActivity extends AppCompatActivity {
                 // Log all fields in the document
                 Log.d("LoginActivity", "Document data: " + document.getData());
 
-                User user = firebaseHelper.documentToUser(document);
+                // Seeds the shared profile cache so the next screen paints without refetching
+                User user = UserProfileCache.getInstance().prime(document);
                 boolean setupComplete = false;
 
                 if (user != null) {
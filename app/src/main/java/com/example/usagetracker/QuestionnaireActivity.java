@@ -17,6 +17,7 @@ import com.google.firebase.auth.FirebaseUser;
 import com.example.usagetracker.models.Household;
 import com.example.usagetracker.models.User;
 import com.example.usagetracker.utils.FirebaseHelper;
+import com.example.usagetracker.utils.OnboardingDraft;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -134,24 +135,10 @@ public class QuestionnaireActivity extends AppCompatActivity {
             // Add current user to residents array
             household.addResident(finalUserId);
 
-            // Save household to Firestore
-            firebaseHelper.saveHousehold(household, task -> {
-                if (task.isSuccessful() && task.getResult() != null) {
-                    String householdId = task.getResult().getId();
-                    Log.d(TAG, "✓ Household saved successfully with ID: " + householdId);
-                    Toast.makeText(QuestionnaireActivity.this,
-                            "Household information saved!",
-                            Toast.LENGTH_SHORT).show();
-
-                    // Continue to next step (GoalSelectionActivity)
-                    navigateToGoalSelection(finalUserId, householdId);
-                } else {
-                    Log.e(TAG, "✗ Failed to save household", task.getException());
-                    Toast.makeText(QuestionnaireActivity.this,
-                            "Failed to save household information",
-                            Toast.LENGTH_SHORT).show();
-                }
-            });
+            // Staged locally; ActivitySetupActivity commits it with the rest of onboarding
+            new OnboardingDraft(this).setHousehold(finalUserId, household);
+            Log.d(TAG, "✓ Household staged for onboarding commit");
+            navigateToGoalSelection(finalUserId);
 
         } catch (NumberFormatException e) {
             Toast.makeText(this, "Please enter valid numbers", Toast.LENGTH_SHORT).show();
@@ -159,11 +146,10 @@ public class QuestionnaireActivity extends AppCompatActivity {
         }
     }
 
-    private void navigateToGoalSelection(String userId, String householdId) {
+    private void navigateToGoalSelection(String userId) {
         Log.d(TAG, "Navigating to GoalSelectionActivity");
         Intent intent = new Intent(QuestionnaireActivity.this, GoalSelectionActivity.class);
         intent.putExtra("USER_ID", userId);
-        intent.putExtra("HOUSEHOLD_ID", householdId);
         intent.putExtra("IS_NEW_USER", isNewUser);
         startActivity(intent);
         finish();
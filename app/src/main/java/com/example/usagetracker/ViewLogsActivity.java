@@ -5,6 +5,7 @@ import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -12,9 +13,10 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.example.usagetracker.models.UsageLog;
 import com.example.usagetracker.utils.FirebaseHelper;
+import com.example.usagetracker.utils.LocalLogStore;
+import com.example.usagetracker.utils.UsageLogPager;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -27,6 +29,10 @@ public class ViewLogsActivity extends AppCompatActivity {
     private List<UsageLog> logsList;
     private String userId;
     private boolean isTestMode = false;
+    private UsageLogPager logsPager;
+    private static final int PAGE_SIZE = 30;
+    // Start loading the next page when this many rows remain below the last visible one
+    private static final int PREFETCH_DISTANCE = 10;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -67,8 +73,19 @@ public class ViewLogsActivity extends AppCompatActivity {
         logsRecyclerView = findViewById(R.id.logsRecyclerView);
         logsList = new ArrayList<>();
         logsAdapter = new LogsAdapter(logsList);
-        logsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        logsRecyclerView.setLayoutManager(layoutManager);
         logsRecyclerView.setAdapter(logsAdapter);
+        logsRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (logsPager == null || dy <= 0) return;
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible + PREFETCH_DISTANCE >= logsAdapter.getItemCount()) {
+                    logsPager.loadNextPage();
+                }
+            }
+        });
 
         loadLogs();
     }
@@ -79,15 +96,29 @@ public class ViewLogsActivity extends AppCompatActivity {
             return;
         }
 
-        firebaseHelper.getUsageLogs(userId, task -> {
-            if (task.isSuccessful() && task.getResult() != null) {
-                logsList.clear();
-                for (QueryDocumentSnapshot document : task.getResult()) {
-                    UsageLog log = firebaseHelper.documentToUsageLog(document);
-                    logsList.add(log);
-                }
-                runOnUiThread(() -> logsAdapter.notifyDataSetChanged());
-            } else {
+        LocalLogStore logStore = LocalLogStore.getInstance(this);
+        logsPager = new UsageLogPager(logStore, firebaseHelper, userId, FirebaseHelper.LOGS_COLLECTION,
+                PAGE_SIZE, logsList, new UsageLogPager.Listener() {
+            @Override
+            public void onLogsReset() {
+                logsAdapter.notifyDataSetChanged();
+            }
+
+            @Override
+            public void onLogsAppended(int positionStart, int count) {
+                logsAdapter.notifyItemRangeInserted(positionStart, count);
+            }
+
+            @Override
+            public void onPageFailed(Exception e) {
+                Toast.makeText(ViewLogsActivity.this, "Failed to load logs", Toast.LENGTH_SHORT).show();
+            }
+        });
+        logsPager.refresh();
+        firebaseHelper.syncUsageLogs(logStore, userId, task -> {
+            if (task.isSuccessful()) {
+                logsPager.refresh();
+            } else if (logsList.isEmpty()) {
                 Toast.makeText(ViewLogsActivity.this, "Failed to load logs", Toast.LENGTH_SHORT).show();
             }
         });
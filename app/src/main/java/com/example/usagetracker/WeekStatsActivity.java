@@ -12,20 +12,25 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.SetOptions;
-import com.example.usagetracker.models.Goal;
-import com.example.usagetracker.models.UsageLog;
 import com.example.usagetracker.utils.FirebaseHelper;
+import com.example.usagetracker.utils.ListenerRegistry;
+import com.example.usagetracker.utils.TimeRange;
+import com.example.usagetracker.utils.UserProfileCache;
+import com.example.usagetracker.utils.UsagePeriods;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -40,6 +45,9 @@ public class WeekStatsActivity extends AppCompatActivity {
     private int totalGoals = 0, goalsMet = 0, totalPoints = 0;
     private double waterSaved = 0, electricitySaved = 0;
     private FirebaseFirestore db;
+    // What LogUsageActivity awarded per log before logs carried ecoPointsEarned
+    private static final int LEGACY_MET_POINTS = 10;
+    private static final int LEGACY_MISSED_POINTS = -5;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -88,161 +96,137 @@ public class WeekStatsActivity extends AppCompatActivity {
         loadWeekStats();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        observeProfile();
+        listenForWeeklyStats();
+    }
+
+    // The goal count comes from the shared profile cache rather than another users/{uid} read
+    private void observeProfile() {
+        if (userId == null) return;
+
+        UserProfileCache.getInstance().observe(this, userId, user -> {
+            if (user == null) return;
+            if (user.getSelectedGoals() != null) {
+                totalGoals = user.getSelectedGoals().size();
+            }
+            updateUI(); // Update denominator
+        });
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
         loadWeekStats(); // Refresh data for the current week whenever this page becomes visible
     }
 
+    // The registry shares one listener per week document and drops this subscription on stop
+    private void listenForWeeklyStats() {
+        if (userId == null) return;
+
+        String weekId = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(Calendar.getInstance().getTime());
+        ListenerRegistry.getInstance().listen(this,
+                db.collection("weeklyStats").document(userId).collection("weeks").document(weekId),
+                (snapshot, e) -> {
+                    if (e != null) {
+                        Toast.makeText(this, "Failed to listen for weekly updates", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    if (snapshot != null && snapshot.exists()) {
+                        Long met = snapshot.getLong("goalsMet");
+                        Long total = snapshot.getLong("totalGoals");
+                        Double water = snapshot.getDouble("waterSaved");
+                        Double electric = snapshot.getDouble("electricitySaved");
+                        Long points = snapshot.getLong("ecoPoints");
+
+                        if (met != null) goalsMet = met.intValue();
+                        if (total != null) totalGoals = total.intValue();
+                        if (water != null) waterSaved = water;
+                        if (electric != null) electricitySaved = electric;
+                        if (points != null) totalPoints = points.intValue();
+
+                        updateUI();
+                    }
+                });
+    }
+
     private void loadWeekStats() {
         if (userId == null) {
             Toast.makeText(this, "User not authenticated", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        db.collection("users").document(userId)
-            .get()
-            .addOnSuccessListener(document -> {
-                if (document.exists()) {
-                    // Get selectedGoals array and count
-                    List<String> selectedGoals = (List<String>) document.get("selectedGoals");
-                    if (selectedGoals != null) {
-                        totalGoals = selectedGoals.size();
-                    }
-
-                    // Get ecoPoints
-                    Long points = document.getLong("ecoPoints");
-                    if (points != null) {
-                        totalPoints = points.intValue();
-                    }
-
-                    updateUI(); // Update denominator and points display
+        // The week rollup holds this week's totals for every log written since rollups existed
+        Date now = new Date();
+        firebaseHelper.getUsageRollup(userId, UsagePeriods.weekBucketId(now), rollupTask -> {
+            if (rollupTask.isSuccessful()) {
+                DocumentSnapshot rollup = rollupTask.getResult();
+                if (rollup != null && rollup.exists()) {
+                    displayRollup(rollup);
                 }
-            })
-            .addOnFailureListener(e -> {
-                Toast.makeText(this, "Failed to load user data", Toast.LENGTH_SHORT).show();
-            });
-
-        // Get current week start and end timestamps
-        Calendar calendar = Calendar.getInstance();
-        calendar.set(Calendar.DAY_OF_WEEK, calendar.getFirstDayOfWeek());
-        calendar.set(Calendar.HOUR_OF_DAY, 0);
-        calendar.set(Calendar.MINUTE, 0);
-        calendar.set(Calendar.SECOND, 0);
-        calendar.set(Calendar.MILLISECOND, 0);
-        long weekStart = calendar.getTimeInMillis();
-
-        calendar.add(Calendar.WEEK_OF_YEAR, 1);
-        long weekEnd = calendar.getTimeInMillis();
-
-        String weekId = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(Calendar.getInstance().getTime());
+                addLogsMissingFromRollup(now, rollup);
+            }
+            setupClickListeners();
+        });
+    }
 
-        // Fetch the current week's stats immediately on load
-        db.collection("weeklyStats").document(userId)
-            .collection("weeks").document(weekId)
-            .get()
-            .addOnSuccessListener(snapshot -> {
-                if (snapshot != null && snapshot.exists()) {
-                    Long met = snapshot.getLong("goalsMet");
-                    Long total = snapshot.getLong("totalGoals");
-                    Double water = snapshot.getDouble("waterSaved");
-                    Double electric = snapshot.getDouble("electricitySaved");
-                    Long points = snapshot.getLong("ecoPoints");
-
-                    if (met != null) goalsMet = met.intValue();
-                    if (total != null) totalGoals = total.intValue();
-                    if (water != null) waterSaved = water;
-                    if (electric != null) electricitySaved = electric;
-                    if (points != null) totalPoints = points.intValue();
-
-                    updateUI(); // Immediately reflect current Firestore data
-                }
-            })
-            .addOnFailureListener(e -> {
-                Toast.makeText(this, "Failed to load weekly data", Toast.LENGTH_SHORT).show();
+    /**
+     * Logs written before rollups existed are not in the week rollup, so the rollup can be missing or
+     * cover only part of the week. One count aggregate tells; if logs are missing, aggregate queries
+     * over the week's logs replace the figures. Goals met and saved amounts come straight from them.
+     * Those older logs carry no ecoPointsEarned either, so their points are rebuilt from the rules
+     * they were awarded under, and added to what the rollup holds for the rest.
+     */
+    private void addLogsMissingFromRollup(Date now, DocumentSnapshot rollup) {
+        long rolledUpLogs = rollupCount(rollup, "logCount");
+        TimeRange week = TimeRange.weekOf(now);
+        firebaseHelper.aggregateLogs(userId, null, null, week).addOnCompleteListener(allTask -> {
+            if (!allTask.isSuccessful() || allTask.getResult().getCount() <= rolledUpLogs) return;
+            long allLogs = allTask.getResult().getCount();
+
+            Task<AggregateQuerySnapshot> met = firebaseHelper.aggregateLogs(userId, null, true, week);
+            Task<AggregateQuerySnapshot> water = firebaseHelper.aggregateLogs(userId, "Water", true, week);
+            Task<AggregateQuerySnapshot> electric = firebaseHelper.aggregateLogs(userId, "Electric", true, week);
+            Tasks.whenAllSuccess(met, water, electric).addOnCompleteListener(task -> {
+                if (!task.isSuccessful()) return;
+                long metLogs = met.getResult().getCount();
+                long rolledUpMet = rollupCount(rollup, "goalsMet");
+                long legacyMet = Math.max(0, metLogs - rolledUpMet);
+                long legacyMissed = Math.max(0, (allLogs - metLogs) - (rolledUpLogs - rolledUpMet));
+
+                goalsMet = (int) metLogs;
+                totalPoints = (int) (rollupCount(rollup, "ecoPoints")
+                        + legacyMet * LEGACY_MET_POINTS + legacyMissed * LEGACY_MISSED_POINTS);
+                waterSaved = savedAmount(water.getResult());
+                electricitySaved = savedAmount(electric.getResult());
+                updateUI();
             });
+        });
+    }
 
-        db.collection("weeklyStats").document(userId)
-          .collection("weeks").document(weekId)
-          .addSnapshotListener((snapshot, e) -> {
-              if (e != null) {
-                  Toast.makeText(this, "Failed to listen for weekly updates", Toast.LENGTH_SHORT).show();
-                  return;
-              }
-              if (snapshot != null && snapshot.exists()) {
-                  Long met = snapshot.getLong("goalsMet");
-                  Long total = snapshot.getLong("totalGoals");
-                  Double water = snapshot.getDouble("waterSaved");
-                  Double electric = snapshot.getDouble("electricitySaved");
-                  Long points = snapshot.getLong("ecoPoints");
-
-                  if (met != null) goalsMet = met.intValue();
-                  if (total != null) totalGoals = total.intValue();
-                  if (water != null) waterSaved = water;
-                  if (electric != null) electricitySaved = electric;
-                  if (points != null) totalPoints = points.intValue();
-
-                  updateUI();
-              }
-          });
-
-        // Load goals and logs for the week
-        firebaseHelper.getGoals(userId, goalsTask -> {
-            if (goalsTask.isSuccessful() && goalsTask.getResult() != null) {
-                List<Goal> goals = new java.util.ArrayList<>();
-                for (QueryDocumentSnapshot doc : goalsTask.getResult()) {
-                    goals.add(firebaseHelper.documentToGoal(doc));
-                }
-
-                firebaseHelper.getUsageLogsForMonth(userId, weekStart, weekEnd, logsTask -> {
-                    if (logsTask.isSuccessful() && logsTask.getResult() != null) {
-                        List<UsageLog> logs = new java.util.ArrayList<>();
-                        for (QueryDocumentSnapshot doc : logsTask.getResult()) {
-                            logs.add(firebaseHelper.documentToUsageLog(doc));
-                        }
+    private long rollupCount(DocumentSnapshot rollup, String field) {
+        Long value = rollup != null && rollup.exists() ? rollup.getLong(field) : null;
+        return value != null ? value : 0;
+    }
 
-                        calculateAndDisplayStats(goals, logs);
-                        setupClickListeners();
-                    } else {
-                        calculateAndDisplayStats(goals, new java.util.ArrayList<>());
-                        setupClickListeners();
-                    }
-                });
-            } else {
-                calculateAndDisplayStats(new java.util.ArrayList<>(), new java.util.ArrayList<>());
-                setupClickListeners();
-            }
-        });
+    private double savedAmount(AggregateQuerySnapshot metLogs) {
+        return firebaseHelper.getAggregateSum(metLogs, FirebaseHelper.TARGET_SUM)
+                - firebaseHelper.getAggregateSum(metLogs, FirebaseHelper.USAGE_SUM);
     }
 
-    private void calculateAndDisplayStats(List<Goal> goals, List<UsageLog> logs) {
+    private void displayRollup(DocumentSnapshot rollup) {
         goalsMet = 0;
         totalPoints = 0;
-        waterSaved = 0;
-        electricitySaved = 0;
-        totalGoals = goals.size();
-
-        // Calculate stats
-        for (UsageLog log : logs) {
-            if (log.isMetGoal()) {
-                goalsMet++;
-            }
-            totalPoints += log.getEcoPointsEarned();
-
-            // Find corresponding goal to calculate savings
-            for (Goal goal : goals) {
-                if (goal.getGoalId().equals(log.getGoalId())) {
-                    if (log.isMetGoal() && log.getUsageAmount() < goal.getTargetLimit()) {
-                        double saved = goal.getTargetLimit() - log.getUsageAmount();
-                        if ("Water".equals(goal.getType())) {
-                            waterSaved += saved;
-                        } else if ("Electric".equals(goal.getType())) {
-                            electricitySaved += saved;
-                        }
-                    }
-                }
-            }
+        if (rollup != null && rollup.exists()) {
+            Long met = rollup.getLong("goalsMet");
+            Long points = rollup.getLong("ecoPoints");
+            if (met != null) goalsMet = met.intValue();
+            if (points != null) totalPoints = points.intValue();
         }
+        waterSaved = firebaseHelper.getRollupTotal(rollup, "saved", "Water");
+        electricitySaved = firebaseHelper.getRollupTotal(rollup, "saved", "Electric");
 
         updateUI();
     }
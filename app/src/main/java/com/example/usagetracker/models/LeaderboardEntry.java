@@ -0,0 +1,43 @@
+package com.example.usagetracker.models;
+
+// One leaderboard row: a user or household id, its display name and its points in that ranking
+public class LeaderboardEntry {
+    private String id;
+    private String name;
+    private double points;
+
+    public LeaderboardEntry() {
+        // Default constructor required for Firestore
+    }
+
+    public LeaderboardEntry(String id, String name, double points) {
+        this.id = id;
+        this.name = name;
+        this.points = points;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public double getPoints() {
+        return points;
+    }
+
+    public void setPoints(double points) {
+        this.points = points;
+    }
+}
@@ -6,6 +6,7 @@ public class User {
     private String userId;
     private String name;
     private String email;
+    private String householdId;
     private int householdSize;
     private List<String> majorAppliances;
     private double previousMonthWaterUsage; // liters
@@ -56,6 +57,14 @@ public class User {
         this.email = email;
     }
 
+    public String getHouseholdId() {
+        return householdId;
+    }
+
+    public void setHouseholdId(String householdId) {
+        this.householdId = householdId;
+    }
+
     public int getHouseholdSize() {
         return householdSize;
     }
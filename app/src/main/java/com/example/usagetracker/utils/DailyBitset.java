@@ -0,0 +1,182 @@
+package com.example.usagetracker.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * One bit per local calendar day (StreakEngine.epochDay), set when a goal was met that day.
+ * Bits are packed into 64-day long words starting at originDay, so a year of history is six words and
+ * is stored as a 48-byte Firestore Blob (see FirebaseHelper.getGoalDaysRef). Range questions are
+ * answered with masks and Long.bitCount over whole words instead of per-day loops.
+ * Days are half-open ranges [fromDay, toDay) like TimeRange.
+ */
+public class DailyBitset {
+    private static final int WORD_BITS = 64;
+
+    private long originDay;
+    private long[] words;
+
+    public DailyBitset() {
+        this(0, new long[0]);
+    }
+
+    private DailyBitset(long originDay, long[] words) {
+        this.originDay = originDay;
+        this.words = words;
+    }
+
+    // Storage: originDay plus the words as big-endian longs
+    public static DailyBitset fromBytes(long originDay, byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long[] words = new long[bytes.length / 8];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = buffer.getLong();
+        }
+        return new DailyBitset(originDay, words);
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(words.length * 8);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    public long getOriginDay() {
+        return originDay;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Marks day as met, growing the word array forwards or backwards as needed; returns false if it already was
+    public boolean set(long day) {
+        if (words.length == 0) {
+            originDay = Math.floorDiv(day, (long) WORD_BITS) * WORD_BITS;
+        }
+        if (day < originDay) {
+            int prepend = (int) ((originDay - day + WORD_BITS - 1) / WORD_BITS);
+            long[] grown = new long[words.length + prepend];
+            System.arraycopy(words, 0, grown, prepend, words.length);
+            words = grown;
+            originDay -= (long) prepend * WORD_BITS;
+        }
+        int index = (int) ((day - originDay) / WORD_BITS);
+        if (index >= words.length) {
+            words = Arrays.copyOf(words, index + 1);
+        }
+        long bit = 1L << ((day - originDay) % WORD_BITS);
+        boolean changed = (words[index] & bit) == 0;
+        words[index] |= bit;
+        return changed;
+    }
+
+    public boolean get(long day) {
+        return day >= originDay && (wordAt((day - originDay) / WORD_BITS) & (1L << ((day - originDay) % WORD_BITS))) != 0;
+    }
+
+    // Number of met days in [fromDay, toDay)
+    public int count(long fromDay, long toDay) {
+        int count = 0;
+        for (long wordIndex = firstWord(fromDay); wordIndex <= lastWord(toDay); wordIndex++) {
+            count += Long.bitCount(maskedWord(wordIndex, fromDay, toDay));
+        }
+        return count;
+    }
+
+    // Share of days in [fromDay, toDay) that were met, 0 for an empty range
+    public double completionRate(long fromDay, long toDay) {
+        return toDay > fromDay ? (double) count(fromDay, toDay) / (toDay - fromDay) : 0.0;
+    }
+
+    public double completionRate(TimeRange range) {
+        return completionRate(StreakEngine.epochDay(range.getStart().toDate()), StreakEngine.epochDay(range.getEnd().toDate()));
+    }
+
+    /**
+     * Longest run of consecutive met days inside [fromDay, toDay). Within a word the run length is the
+     * number of x &= x << 1 steps until x is empty; runs crossing word boundaries are carried over as
+     * the word's trailing and leading ones.
+     */
+    public int longestStreak(long fromDay, long toDay) {
+        int best = 0;
+        int carry = 0;
+        for (long wordIndex = firstWord(fromDay); wordIndex <= lastWord(toDay); wordIndex++) {
+            long word = maskedWord(wordIndex, fromDay, toDay);
+            if (word == -1L) {
+                carry += WORD_BITS;
+                best = Math.max(best, carry);
+                continue;
+            }
+            best = Math.max(best, carry + Long.numberOfTrailingZeros(~word));
+            int inner = 0;
+            for (long x = word; x != 0; x &= x << 1) {
+                inner++;
+            }
+            best = Math.max(best, inner);
+            carry = Long.numberOfLeadingZeros(~word);
+        }
+        return best;
+    }
+
+    public int longestStreak() {
+        return longestStreak(originDay, originDay + (long) words.length * WORD_BITS);
+    }
+
+    /**
+     * Met days of the month containing date for a calendar heatmap: bit (d - 1) is day-of-month d.
+     */
+    public int monthMask(Date date) {
+        long first = StreakEngine.epochDay(UsagePeriods.monthStart(date));
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        int length = calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+        return (int) bits(first, length);
+    }
+
+    // The `length` (at most 64) days starting at fromDay as the low bits of a long
+    public long bits(long fromDay, int length) {
+        long offset = fromDay - originDay;
+        long wordIndex = Math.floorDiv(offset, (long) WORD_BITS);
+        int shift = (int) Math.floorMod(offset, (long) WORD_BITS);
+        long value = wordAt(wordIndex) >>> shift;
+        if (shift != 0) {
+            value |= wordAt(wordIndex + 1) << (WORD_BITS - shift);
+        }
+        return length >= WORD_BITS ? value : value & ((1L << length) - 1);
+    }
+
+    private long firstWord(long fromDay) {
+        return Math.floorDiv(Math.max(fromDay, originDay) - originDay, (long) WORD_BITS);
+    }
+
+    private long lastWord(long toDay) {
+        return Math.min(Math.floorDiv(toDay - 1 - originDay, (long) WORD_BITS), words.length - 1);
+    }
+
+    // The word with days outside [fromDay, toDay) cleared
+    private long maskedWord(long wordIndex, long fromDay, long toDay) {
+        long wordStart = originDay + wordIndex * WORD_BITS;
+        long word = wordAt(wordIndex);
+        if (fromDay > wordStart) {
+            word &= fromDay - wordStart >= WORD_BITS ? 0 : -1L << (fromDay - wordStart);
+        }
+        if (toDay < wordStart + WORD_BITS) {
+            word &= toDay <= wordStart ? 0 : -1L >>> (WORD_BITS - (toDay - wordStart));
+        }
+        return word;
+    }
+
+    private long wordAt(long wordIndex) {
+        return wordIndex >= 0 && wordIndex < words.length ? words[(int) wordIndex] : 0;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.usagetracker.utils;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.example.usagetracker.models.UsageLog;
+import com.google.firebase.Timestamp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Last rendered dashboard state, kept in a small binary file so DashboardActivity can paint it
+ * synchronously in onCreate and reconcile with live data afterwards.
+ */
+public class DashboardSnapshotStore {
+    private static final String TAG = "DashboardSnapshotStore";
+    private static final String FILE_NAME = "dashboard_snapshot.bin";
+    // Bump when the layout below changes; older files are then ignored
+    private static final int FORMAT_VERSION = 1;
+
+    public static class Snapshot {
+        public String userId;
+        public String name;
+        public int ecoPoints;
+        public int currentStreak;
+        public List<String> goals = new ArrayList<>();
+        public List<UsageLog> logs = new ArrayList<>();
+    }
+
+    private final AtomicFile file;
+
+    public DashboardSnapshotStore(Context context) {
+        file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    // Returns null when there is no snapshot for this user or it cannot be read
+    public Snapshot read(String userId) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead()))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            Snapshot snapshot = new Snapshot();
+            snapshot.userId = in.readUTF();
+            if (!snapshot.userId.equals(userId)) {
+                return null;
+            }
+            snapshot.name = readNullableString(in);
+            snapshot.ecoPoints = in.readInt();
+            snapshot.currentStreak = in.readInt();
+
+            int goalCount = in.readInt();
+            for (int i = 0; i < goalCount; i++) {
+                snapshot.goals.add(in.readUTF());
+            }
+
+            int logCount = in.readInt();
+            for (int i = 0; i < logCount; i++) {
+                UsageLog log = new UsageLog();
+                log.setLogId(in.readUTF());
+                log.setUserId(userId);
+                log.setGoalId(readNullableString(in));
+                log.setActivityName(readNullableString(in));
+                log.setType(DocumentCodecs.canonical(readNullableString(in)));
+                log.setUsageAmount(in.readDouble());
+                log.setTargetLimit(in.readDouble());
+                log.setTimestamp(new Timestamp(new Date(in.readLong())));
+                log.setEcoPointsEarned(in.readInt());
+                log.setMetGoal(in.readBoolean());
+                snapshot.logs.add(log);
+            }
+            return snapshot;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable dashboard snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    public void write(Snapshot snapshot) {
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(snapshot.userId);
+            writeNullableString(out, snapshot.name);
+            out.writeInt(snapshot.ecoPoints);
+            out.writeInt(snapshot.currentStreak);
+
+            out.writeInt(snapshot.goals.size());
+            for (String goal : snapshot.goals) {
+                out.writeUTF(goal);
+            }
+
+            out.writeInt(snapshot.logs.size());
+            for (UsageLog log : snapshot.logs) {
+                out.writeUTF(log.getLogId() != null ? log.getLogId() : "");
+                writeNullableString(out, log.getGoalId());
+                writeNullableString(out, log.getActivityName());
+                writeNullableString(out, log.getType());
+                out.writeDouble(log.getUsageAmount());
+                out.writeDouble(log.getTargetLimit());
+                out.writeLong(log.getTimestamp() != null ? log.getTimestamp().toDate().getTime() : 0);
+                out.writeInt(log.getEcoPointsEarned());
+                out.writeBoolean(log.isMetGoal());
+            }
+            out.flush();
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write dashboard snapshot", e);
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+        }
+    }
+
+    // Call on sign-out so the next account never sees the previous dashboard
+    public void clear() {
+        file.delete();
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.usagetracker.utils;
+
+import com.example.usagetracker.models.Goal;
+import com.example.usagetracker.models.Household;
+import com.example.usagetracker.models.UsageLog;
+import com.example.usagetracker.models.User;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts between model objects and Firestore field maps.
+ * Decoding reads DocumentSnapshot.getData() once and does a single map lookup per field, instead of a
+ * field-path parse and conversion for every getLong/getDouble call. Encoding fills maps that are reused
+ * across calls; Firestore copies the map when it is passed to set/add, so a map is only valid until the
+ * next encode of the same kind.
+ */
+public class DocumentCodecs {
+    private static final Timestamp EPOCH = new Timestamp(new Date(0));
+
+    // Canonical instances for the values of Goal/UsageLog type, frequency and unit (see res/values/arrays.xml)
+    private static final Map<String, String> CANONICAL_VALUES = new HashMap<>();
+
+    static {
+        for (String value : new String[]{
+                "Electric", "Water",
+                "Daily", "Weekly",
+                "minutes", "hours", "liters", "kWh"}) {
+            CANONICAL_VALUES.put(value, value);
+        }
+    }
+
+    private final Map<String, Object> userMap = new HashMap<>();
+    private final Map<String, Object> householdMap = new HashMap<>();
+    private final Map<String, Object> goalMap = new HashMap<>();
+    private final Map<String, Object> usageLogMap = new HashMap<>();
+
+    // Decoding
+    public static User decodeUser(Map<String, Object> data) {
+        User user = new User();
+        user.setUserId(asString(data.get("userId")));
+        user.setName(asString(data.get("name")));
+        user.setEmail(asString(data.get("email")));
+        user.setHouseholdId(asString(data.get("householdId")));
+        user.setHouseholdSize(asInt(data.get("householdSize")));
+        user.setMajorAppliances(asStringList(data.get("majorAppliances")));
+        user.setPreviousMonthWaterUsage(asDouble(data.get("previousMonthWaterUsage")));
+        user.setPreviousMonthElectricityUsage(asDouble(data.get("previousMonthElectricityUsage")));
+        user.setSelectedGoals(asStringList(data.get("selectedGoals")));
+        user.setEcoPoints(asPoints(data.get("ecoPoints")));
+        user.setCurrentStreak(asInt(data.get("currentStreak")));
+        user.setHasCompletedQuestionnaire(asBoolean(data.get("hasCompletedQuestionnaire")));
+        user.setSetupComplete(asBoolean(data.get("setupComplete")));
+        user.setLastLoginDate(asLong(data.get("lastLoginDate")));
+        return user;
+    }
+
+    public static Household decodeHousehold(String householdId, Map<String, Object> data) {
+        Household household = new Household();
+        household.setHouseholdId(householdId);
+        household.setHouseholdSize(asInt(data.get("householdSize")));
+        household.setMajorAppliances(asStringList(data.get("majorAppliances")));
+        household.setPreviousMonthWaterUsage(asDouble(data.get("previousMonthWaterUsage")));
+        household.setPreviousMonthElectricityUsage(asDouble(data.get("previousMonthElectricityUsage")));
+        household.setResidents(asStringList(data.get("residents")));
+        household.setCreatedAt(asLong(data.get("createdAt")));
+        household.setUpdatedAt(asLong(data.get("updatedAt")));
+        household.setPastMonthWaterUsageMood(asString(data.get("pastMonthWaterUsageMood")));
+        household.setPastMonthElectricityUsageMood(asString(data.get("pastMonthElectricityUsageMood")));
+        return household;
+    }
+
+    public static Goal decodeGoal(String goalId, Map<String, Object> data) {
+        Goal goal = new Goal();
+        goal.setGoalId(goalId);
+        goal.setUserId(asString(data.get("userId")));
+        goal.setActivityName(asString(data.get("activityName")));
+        goal.setTargetLimit(asDouble(data.get("targetLimit")));
+        goal.setType(canonical(data.get("type")));
+        goal.setFrequency(canonical(data.get("frequency")));
+        goal.setUnit(canonical(data.get("unit")));
+        goal.setCreatedAt(asLong(data.get("createdAt")));
+        return goal;
+    }
+
+    public static UsageLog decodeUsageLog(String logId, Map<String, Object> data) {
+        UsageLog log = new UsageLog();
+        log.setLogId(logId);
+        log.setUserId(asString(data.get("userId")));
+        // Logs in the `logs` collection carry activityId instead of goalId
+        Object goalId = data.get("goalId");
+        log.setGoalId(asString(goalId != null ? goalId : data.get("activityId")));
+        log.setActivityName(asString(data.get("activityName")));
+        log.setUsageAmount(asDouble(data.get("usageAmount")));
+        log.setType(canonical(data.get("type")));
+        log.setTargetLimit(asDouble(data.get("targetLimit")));
+        log.setTimestamp(asTimestamp(data.get("timestamp")));
+        log.setEcoPointsEarned(asInt(data.get("ecoPointsEarned")));
+        log.setMetGoal(asBoolean(data.get("metGoal")));
+        return log;
+    }
+
+    // getData() is null for a missing document; decode that as an empty one like the old per-field getters did
+    public static Map<String, Object> dataOf(DocumentSnapshot document) {
+        Map<String, Object> data = document.getData();
+        return data != null ? data : Collections.<String, Object>emptyMap();
+    }
+
+    // Encoding
+    public Map<String, Object> encodeUser(User user) {
+        Map<String, Object> map = userMap;
+        map.clear();
+        map.put("userId", user.getUserId());
+        map.put("name", user.getName() != null ? user.getName() : "");
+        map.put("email", user.getEmail() != null ? user.getEmail() : "");
+        if (user.getHouseholdId() != null) {
+            map.put("householdId", user.getHouseholdId());
+        }
+        map.put("householdSize", user.getHouseholdSize());
+        map.put("majorAppliances", user.getMajorAppliances() != null ? user.getMajorAppliances() : Collections.emptyList());
+        map.put("previousMonthWaterUsage", user.getPreviousMonthWaterUsage());
+        map.put("previousMonthElectricityUsage", user.getPreviousMonthElectricityUsage());
+        map.put("selectedGoals", user.getSelectedGoals() != null ? user.getSelectedGoals() : Collections.emptyList());
+        map.put("ecoPoints", user.getEcoPoints());
+        map.put("currentStreak", user.getCurrentStreak());
+        map.put("hasCompletedQuestionnaire", user.isHasCompletedQuestionnaire());
+        map.put("setupComplete", user.isSetupComplete());
+        map.put("lastLoginDate", user.getLastLoginDate());
+        return map;
+    }
+
+    // Fields shared by saveHousehold and updateHousehold; callers add createdAt/ecoPoints as needed
+    public Map<String, Object> encodeHousehold(Household household) {
+        Map<String, Object> map = householdMap;
+        map.clear();
+        map.put("householdSize", household.getHouseholdSize());
+        map.put("majorAppliances", household.getMajorAppliances() != null ? household.getMajorAppliances() : Collections.emptyList());
+        map.put("previousMonthWaterUsage", household.getPreviousMonthWaterUsage());
+        map.put("previousMonthElectricityUsage", household.getPreviousMonthElectricityUsage());
+        map.put("residents", household.getResidents() != null ? household.getResidents() : Collections.emptyList());
+        map.put("updatedAt", System.currentTimeMillis());
+        map.put("pastMonthWaterUsageMood", household.getPastMonthWaterUsageMood());
+        map.put("pastMonthElectricityUsageMood", household.getPastMonthElectricityUsageMood());
+        return map;
+    }
+
+    public Map<String, Object> encodeGoal(Goal goal) {
+        Map<String, Object> map = goalMap;
+        map.clear();
+        map.put("userId", goal.getUserId());
+        map.put("activityName", goal.getActivityName());
+        map.put("targetLimit", goal.getTargetLimit());
+        map.put("type", goal.getType());
+        map.put("frequency", goal.getFrequency());
+        map.put("unit", goal.getUnit());
+        map.put("createdAt", goal.getCreatedAt());
+        return map;
+    }
+
+    // goalIdField is "activityId" for the `logs` collection and "goalId" for `usageLogs`
+    public Map<String, Object> encodeUsageLog(UsageLog log, String goalIdField) {
+        Map<String, Object> map = usageLogMap;
+        map.clear();
+        map.put("userId", log.getUserId());
+        map.put(goalIdField, log.getGoalId());
+        map.put("activityName", log.getActivityName());
+        map.put("usageAmount", log.getUsageAmount());
+        map.put("targetLimit", log.getTargetLimit());
+        if (log.getType() != null) {
+            map.put("type", log.getType());
+        }
+        map.put("timestamp", log.getTimestamp());
+        map.put("ecoPointsEarned", log.getEcoPointsEarned());
+        map.put("metGoal", log.isMetGoal());
+        return map;
+    }
+
+    // Field readers: one lookup, no re-boxing, Firestore's Long/Double both accepted for numbers
+    static String asString(Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    static String canonical(Object value) {
+        if (!(value instanceof String)) {
+            return null;
+        }
+        String canonical = CANONICAL_VALUES.get(value);
+        return canonical != null ? canonical : (String) value;
+    }
+
+    static int asInt(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    /**
+     * Point totals are stored as doubles (shard and fold increments are doubles); every place that shows
+     * one as a whole number rounds it here, so the dashboard and a fold's result agree.
+     */
+    public static int roundPoints(double points) {
+        return (int) Math.round(points);
+    }
+
+    static int asPoints(Object value) {
+        return value instanceof Number ? roundPoints(((Number) value).doubleValue()) : 0;
+    }
+
+    static long asLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    static double asDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    static boolean asBoolean(Object value) {
+        return value instanceof Boolean && (Boolean) value;
+    }
+
+    // Older documents stored the timestamp as epoch millis
+    static Timestamp asTimestamp(Object value) {
+        if (value instanceof Timestamp) {
+            return (Timestamp) value;
+        }
+        if (value instanceof Number) {
+            return new Timestamp(new Date(((Number) value).longValue()));
+        }
+        return EPOCH;
+    }
+
+    // Firestore already hands back a fresh ArrayList per decode, so it is used as-is
+    @SuppressWarnings("unchecked")
+    static List<String> asStringList(Object value) {
+        return value instanceof List ? (List<String>) value : new ArrayList<>();
+    }
+}
@@ -4,27 +4,91 @@ import android.util.Log;
 
 import com.example.usagetracker.models.Goal;
 import com.example.usagetracker.models.Household;
+import com.example.usagetracker.models.LeaderboardEntry;
 import com.example.usagetracker.models.UsageLog;
 import com.example.usagetracker.models.User;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.AggregateField;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class FirebaseHelper {
     private static final String TAG = "FirebaseHelper";
+    // Every usage log lives in `logs`, keyed to its activity by activityId
+    public static final String LOGS_COLLECTION = "logs";
+    // Legacy goalId-keyed logs; LogMigrationJob copies them into LOGS_COLLECTION
+    public static final String USAGE_LOGS_COLLECTION = "usageLogs";
+    // Goals created during onboarding; LogUsageActivity and the dashboard read them back from here
+    public static final String ACTIVITIES_COLLECTION = "activities";
+    private static final String[] SYNCED_LOG_COLLECTIONS = {LOGS_COLLECTION};
+    private static final int SYNC_PAGE_SIZE = 200;
+    private static final int MAX_BATCH_WRITES = 500;
+    // Each queued log writes itself, three rollups, a shard, two period entries, a ledger event and at most one
+    // goal-days bitset, plus one streak write per chunk: 50 stay under MAX_BATCH_WRITES
+    private static final int QUEUE_FLUSH_CHUNK = 50;
+    // users/{uid}/goalDays/{activityId}: a DailyBitset of the days each goal was met
+    public static final String GOAL_DAYS_COLLECTION = "goalDays";
+    public static final String ROLLUPS_COLLECTION = "usageRollups";
+    public static final String PERIOD_LEADERBOARDS_COLLECTION = "leaderboardPeriods";
+    public static final String HOUSEHOLD_RANKING = "households";
+    private static final int POINT_SHARD_COUNT = 10;
+    public static final int LEADERBOARD_SIZE = 50;
+    // whereIn on document ids takes at most 10 values on older SDKs
+    private static final int RESOLVE_NAMES_CHUNK = 10;
+    private static final long POINTS_FOLD_INTERVAL_MS = 5 * 60 * 1000;
+    public static final String POINTS_REASON_LOG = "log";
+    public static final String POINTS_REASON_CHECK_IN = "checkIn";
+    public static final String POINTS_REASON_ADJUSTMENT = "adjustment";
+    // Ledger events stay individually auditable this long before compaction folds them into a snapshot
+    private static final long POINT_EVENT_RETENTION_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final long POINT_COMPACTION_INTERVAL_MS = 24 * 60 * 60 * 1000;
+    // Each compacted event costs a read and a delete inside one transaction
+    private static final int POINT_COMPACTION_PAGE = 200;
+    private static final long READ_DEDUP_WINDOW_MS = 2000;
+    // Fields computed by aggregateLogs; read them with getAggregateSum or AggregateQuerySnapshot.getCount
+    public static final AggregateField.SumAggregateField USAGE_SUM = AggregateField.sum("usageAmount");
+    public static final AggregateField.SumAggregateField TARGET_SUM = AggregateField.sum("targetLimit");
+    public static final AggregateField.SumAggregateField POINTS_SUM = AggregateField.sum("ecoPointsEarned");
+    // How long a fold trusts this process's copy of the top board's floor and members
+    private static final long TOP_BOARD_CACHE_MS = 5 * 60 * 1000;
+    private static final Map<Object, Task<?>> inFlightRequests = new HashMap<>();
+    private static final Set<String> cachedTopBoardMembers = new HashSet<>();
+    private static final Map<String, String> resolvedNames = new HashMap<>();
+    private static long cachedTopBoardFloor = Long.MIN_VALUE;
+    private static long cachedTopBoardAt = 0;
+    private static final Map<Object, Long> requestCompletedAt = new HashMap<>();
+    private final Random random = new Random();
+    private final DocumentCodecs codecs = new DocumentCodecs();
     private FirebaseFirestore db;
     private FirebaseAuth auth;
 
@@ -40,21 +104,9 @@ public class FirebaseHelper {
             return;
         }
 
-        Map<String, Object> userMap = new HashMap<>();
-        userMap.put("userId", user.getUserId());
-        userMap.put("name", user.getName() != null ? user.getName() : "");
-        userMap.put("email", user.getEmail() != null ? user.getEmail() : "");
-        userMap.put("householdSize", user.getHouseholdSize());
-        userMap.put("majorAppliances", user.getMajorAppliances() != null ? user.getMajorAppliances() : new ArrayList<String>());
-        userMap.put("previousMonthWaterUsage", user.getPreviousMonthWaterUsage());
-        userMap.put("previousMonthElectricityUsage", user.getPreviousMonthElectricityUsage());
-        userMap.put("selectedGoals", user.getSelectedGoals() != null ? user.getSelectedGoals() : new ArrayList<String>());
-        userMap.put("ecoPoints", user.getEcoPoints());
-        userMap.put("currentStreak", user.getCurrentStreak());
-        userMap.put("hasCompletedQuestionnaire", user.isHasCompletedQuestionnaire());
-        userMap.put("setupComplete", user.isSetupComplete());
-        userMap.put("lastLoginDate", user.getLastLoginDate());
+        Map<String, Object> userMap = codecs.encodeUser(user);
 
+        invalidateRequest(userReadKey(user.getUserId()));
         Log.d(TAG, "Saving user to Firestore: " + user.getUserId());
         db.collection("users").document(user.getUserId())
                 .set(userMap)
@@ -69,40 +121,529 @@ public class FirebaseHelper {
     }
 
     public void getUser(String userId, OnCompleteListener<DocumentSnapshot> listener) {
-        db.collection("users").document(userId)
-                .get()
+        coalescedGet(db.collection("users").document(userId))
                 .addOnCompleteListener(listener);
     }
 
+    /**
+     * Sets an absolute balance by recording the difference from the current folded plus unfolded total
+     * as an adjustment event, so the ledger still adds up to users/{uid}.ecoPoints. Folds right after,
+     * so ecoPoints and the top leaderboard show the new balance without waiting for the next fold.
+     */
     public void updateUserEcoPoints(String userId, int newPoints, OnCompleteListener<Void> listener) {
-        db.collection("users").document(userId)
-                .update("ecoPoints", newPoints)
+        DocumentReference userRef = db.collection("users").document(userId);
+        db.runTransaction(transaction -> {
+            Double folded = transaction.get(userRef).getDouble("ecoPoints");
+            double current = folded != null ? folded : 0.0;
+            for (int shard = 0; shard < POINT_SHARD_COUNT; shard++) {
+                Double points = transaction.get(getPointShardRef(userId, shard)).getDouble("points");
+                current += points != null ? points : 0.0;
+            }
+            stageEcoPoints(transaction::set, userId, newPoints - current, new Date(), POINTS_REASON_ADJUSTMENT, null);
+            return null;
+        }).addOnCompleteListener(task -> {
+            invalidateRequest(userReadKey(userId));
+            if (!task.isSuccessful()) {
+                listener.onComplete(Tasks.forException(task.getException()));
+                return;
+            }
+            foldEcoPoints(userId, foldTask -> listener.onComplete(foldTask.isSuccessful()
+                    ? Tasks.<Void>forResult(null)
+                    : Tasks.<Void>forException(foldTask.getException())));
+        });
+    }
+
+    // Request coalescing
+
+    /**
+     * Single-flight: callers asking for the same key while a request is in flight share its Task, and a
+     * successful result is handed out again for windowMs after it completes. The maps are static because
+     * every Activity creates its own FirebaseHelper.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Task<T> coalesce(Object key, long windowMs, Supplier<Task<T>> request) {
+        long now = System.currentTimeMillis();
+        synchronized (inFlightRequests) {
+            Task<?> existing = inFlightRequests.get(key);
+            if (existing != null) {
+                if (!existing.isComplete()) {
+                    return (Task<T>) existing;
+                }
+                Long completedAt = requestCompletedAt.get(key);
+                if (existing.isSuccessful() && completedAt != null && now - completedAt < windowMs) {
+                    return (Task<T>) existing;
+                }
+            }
+
+            Task<T> task = request.get();
+            inFlightRequests.put(key, task);
+            requestCompletedAt.remove(key);
+            task.addOnCompleteListener(done -> {
+                synchronized (inFlightRequests) {
+                    if (inFlightRequests.get(key) != done) return;
+                    if (done.isSuccessful() && windowMs > 0) {
+                        requestCompletedAt.put(key, System.currentTimeMillis());
+                    } else {
+                        inFlightRequests.remove(key);
+                    }
+                }
+            });
+            return task;
+        }
+    }
+
+    /**
+     * Drops a cached result after a write so the next read goes to Firestore. A read still in flight is
+     * dropped too: its current callers get what it returns, but coalesce no longer finds it as the entry
+     * for key once it completes, so a result that may predate the write is never handed out again.
+     */
+    private static void invalidateRequest(Object key) {
+        synchronized (inFlightRequests) {
+            inFlightRequests.remove(key);
+            requestCompletedAt.remove(key);
+        }
+    }
+
+    // invalidateRequest for every coalesced read of path or of anything below it
+    private static void invalidateReads(String path) {
+        synchronized (inFlightRequests) {
+            List<Object> stale = new ArrayList<>();
+            for (Object key : inFlightRequests.keySet()) {
+                if (key instanceof ReadKey && ((ReadKey) key).isUnder(path)) {
+                    stale.add(key);
+                }
+            }
+            for (Object key : stale) {
+                inFlightRequests.remove(key);
+                requestCompletedAt.remove(key);
+            }
+        }
+    }
+
+    private static ReadKey userReadKey(String userId) {
+        return new ReadKey("users/" + userId, null);
+    }
+
+    // Identical document gets within READ_DEDUP_WINDOW_MS share one round trip
+    private Task<DocumentSnapshot> coalescedGet(DocumentReference ref) {
+        return coalesce(new ReadKey(ref.getPath(), null), READ_DEDUP_WINDOW_MS, ref::get);
+    }
+
+    // Same for queries; Query equality covers filters, order, limit and cursors. path is the collection queried
+    private Task<QuerySnapshot> coalescedGet(String path, Query query) {
+        return coalesce(new ReadKey(path, query), READ_DEDUP_WINDOW_MS, query::get);
+    }
+
+    // Coalescing key of a get: the document or collection path, plus the query for collection reads
+    private static final class ReadKey {
+        private final String path;
+        private final Query query;
+
+        ReadKey(String path, Query query) {
+            this.path = path;
+            this.query = query;
+        }
+
+        boolean isUnder(String prefix) {
+            return path.equals(prefix) || path.startsWith(prefix + "/");
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ReadKey)) return false;
+            ReadKey that = (ReadKey) other;
+            return path.equals(that.path) && Objects.equals(query, that.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + Objects.hashCode(query);
+        }
+    }
+
+    // Eco-points sharded counter
+
+    /**
+     * Stages a points change on one randomly chosen shard under users/{uid}/pointShards, so bursts of
+     * logging spread their writes instead of all contending on the users/{uid} document.
+     * The users/{uid}.ecoPoints total only moves when the shards are folded.
+     * Every change is also recorded as an event in the users/{uid}/pointEvents ledger.
+     */
+    public void stageEcoPoints(WriteBatch batch, String userId, double delta, String reason) {
+        stageEcoPoints(batch::set, userId, delta, new Date(), reason, null);
+    }
+
+    // earnedAt picks the weekly and monthly buckets, so a queued log still counts for the period it was logged in.
+    // sourceId, when set, is also the event id so replaying the same source cannot add a second event.
+    private void stageEcoPoints(MergeWriter writer, String userId, double delta, Date earnedAt,
+                                String reason, String sourceId) {
+        if (delta == 0) {
+            return;
+        }
+        Map<String, Object> shardMap = new HashMap<>();
+        shardMap.put("points", FieldValue.increment(delta));
+        writer.set(getPointShardRef(userId, random.nextInt(POINT_SHARD_COUNT)), shardMap, SetOptions.merge());
+
+        // Weekly and monthly rankings are plain per-user counters in the bucket for the current period.
+        // An adjustment corrects the lifetime balance and was not earned in any period, so it stays out of them.
+        if (!POINTS_REASON_ADJUSTMENT.equals(reason)) {
+            Map<String, Object> periodMap = new HashMap<>();
+            periodMap.put("userId", userId);
+            periodMap.put("points", FieldValue.increment(delta));
+            writer.set(getPeriodEntryRef(UsagePeriods.leaderboardWeekBucketId(earnedAt), userId), periodMap, SetOptions.merge());
+            writer.set(getPeriodEntryRef(UsagePeriods.leaderboardMonthBucketId(earnedAt), userId), periodMap, SetOptions.merge());
+        }
+
+        Map<String, Object> eventMap = new HashMap<>();
+        eventMap.put("delta", delta);
+        eventMap.put("reason", reason);
+        eventMap.put("sourceId", sourceId);
+        eventMap.put("earnedAt", new Timestamp(earnedAt));
+        // Compaction orders by the server clock, so an event queued offline is never filed behind a snapshot
+        eventMap.put("recordedAt", FieldValue.serverTimestamp());
+        CollectionReference events = getPointEventsRef(userId);
+        writer.set(sourceId != null ? events.document(sourceId) : events.document(), eventMap, SetOptions.merge());
+    }
+
+    // WriteBatch::set or Transaction::set, so the same staging code serves batches and transactions
+    private interface MergeWriter {
+        void set(DocumentReference ref, Map<String, Object> data, SetOptions options);
+    }
+
+    public DocumentReference getPeriodEntryRef(String periodId, String userId) {
+        return db.collection(PERIOD_LEADERBOARDS_COLLECTION).document(periodId)
+                .collection("users").document(userId);
+    }
+
+    public void addEcoPoints(String userId, double delta, String reason, OnCompleteListener<Void> listener) {
+        WriteBatch batch = db.batch();
+        stageEcoPoints(batch, userId, delta, reason);
+        batch.commit().addOnCompleteListener(listener);
+    }
+
+    /**
+     * Moves every shard's points into users/{uid}.ecoPoints in one transaction and resets the shards.
+     * The listener receives the new folded total.
+     */
+    public void foldEcoPoints(String userId, OnCompleteListener<Integer> listener) {
+        DocumentReference userRef = db.collection("users").document(userId);
+        String[] foldedName = new String[1];
+        db.runTransaction(transaction -> {
+            DocumentSnapshot userDoc = transaction.get(userRef);
+            List<DocumentSnapshot> shards = new ArrayList<>();
+            for (int shard = 0; shard < POINT_SHARD_COUNT; shard++) {
+                shards.add(transaction.get(getPointShardRef(userId, shard)));
+            }
+
+            Double current = userDoc.getDouble("ecoPoints");
+            double total = current != null ? current : 0.0;
+            double pending = 0.0;
+            for (DocumentSnapshot shard : shards) {
+                Double points = shard.getDouble("points");
+                if (points != null && points != 0) {
+                    pending += points;
+                    transaction.update(shard.getReference(), "points", 0);
+                }
+            }
+
+            Map<String, Object> foldMap = new HashMap<>();
+            if (!userDoc.contains("ledgerOpenedAt")) {
+                // Points earned before the ledger existed become its opening snapshot
+                Map<String, Object> openingMap = new HashMap<>();
+                openingMap.put("sequence", 0L);
+                openingMap.put("balance", total);
+                openingMap.put("eventCount", 0L);
+                openingMap.put("createdAt", FieldValue.serverTimestamp());
+                transaction.set(getPointSnapshotsRef(userId).document("0"), openingMap);
+                foldMap.put("ledgerOpenedAt", System.currentTimeMillis());
+            }
+
+            total += pending;
+            foldMap.put("ecoPoints", total);
+            foldMap.put("ecoPointsFoldedAt", System.currentTimeMillis());
+            transaction.set(userRef, foldMap, SetOptions.merge());
+
+            // Household totals only ever move by the folded delta, so ranking households never reads their residents
+            String householdId = userDoc.getString("householdId");
+            if (householdId != null && pending != 0) {
+                Map<String, Object> householdMap = new HashMap<>();
+                householdMap.put("ecoPoints", FieldValue.increment(pending));
+                transaction.set(db.collection("households").document(householdId), householdMap, SetOptions.merge());
+            }
+
+            // Period entries are written without a name on the hot path; fill it in for the current buckets here
+            String name = userDoc.getString("name");
+            Date now = new Date();
+            Map<String, Object> periodNameMap = new HashMap<>();
+            periodNameMap.put("name", name != null ? name : "");
+            transaction.set(getPeriodEntryRef(UsagePeriods.leaderboardWeekBucketId(now), userId), periodNameMap, SetOptions.merge());
+            transaction.set(getPeriodEntryRef(UsagePeriods.leaderboardMonthBucketId(now), userId), periodNameMap, SetOptions.merge());
+
+            foldedName[0] = name;
+            return DocumentCodecs.roundPoints(total);
+        }).addOnCompleteListener(task -> {
+            invalidateRequest(userReadKey(userId));
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Error folding eco points for " + userId, task.getException());
+            } else {
+                updateTopLeaderboardIfCrossed(userId, foldedName[0], task.getResult());
+            }
+            listener.onComplete(task);
+        });
+    }
+
+    /**
+     * Folds only if the last fold is older than POINTS_FOLD_INTERVAL_MS, so screens can call this on every open.
+     * Folding is client-triggered: nothing runs it on a schedule, the dashboard calls this when it opens.
+     * The listener always completes, with a null result when no fold was due.
+     */
+    public void foldEcoPointsIfStale(DocumentSnapshot userDoc, OnCompleteListener<Integer> listener) {
+        Long foldedAt = userDoc.getLong("ecoPointsFoldedAt");
+        if (foldedAt != null && System.currentTimeMillis() - foldedAt < POINTS_FOLD_INTERVAL_MS) {
+            listener.onComplete(Tasks.forResult(null));
+            return;
+        }
+        foldEcoPoints(userDoc.getId(), listener);
+    }
+
+    public DocumentReference getPointShardRef(String userId, int shard) {
+        return db.collection("users").document(userId)
+                .collection("pointShards").document(String.valueOf(shard));
+    }
+
+    // Eco-points ledger
+
+    public CollectionReference getPointEventsRef(String userId) {
+        return db.collection("users").document(userId).collection("pointEvents");
+    }
+
+    public CollectionReference getPointSnapshotsRef(String userId) {
+        return db.collection("users").document(userId).collection("pointSnapshots");
+    }
+
+    /**
+     * The balance according to the ledger: the latest compaction snapshot plus a server-side sum of the
+     * events recorded since. Two reads however long the history is. Use it to audit users/{uid}.ecoPoints.
+     */
+    public void getLedgerBalance(String userId, OnCompleteListener<Double> listener) {
+        getLatestPointSnapshot(userId)
+                .continueWithTask(snapshotTask -> {
+                    if (!snapshotTask.isSuccessful()) {
+                        return Tasks.forException(snapshotTask.getException());
+                    }
+                    DocumentSnapshot snapshot = snapshotTask.getResult();
+                    double base = snapshot != null && snapshot.getDouble("balance") != null ? snapshot.getDouble("balance") : 0.0;
+
+                    AggregateField.SumAggregateField sum = AggregateField.sum("delta");
+                    return getPointEventsRef(userId)
+                            .aggregate(sum)
+                            .get(AggregateSource.SERVER)
+                            .continueWith(sumTask -> {
+                                if (!sumTask.isSuccessful()) {
+                                    throw sumTask.getException();
+                                }
+                                Double events = sumTask.getResult().getDouble(sum);
+                                return base + (events != null ? events : 0.0);
+                            });
+                })
                 .addOnCompleteListener(listener);
     }
 
+    /**
+     * Resets users/{uid}.ecoPoints to the ledger balance and clears the shards, whose points the ledger
+     * already contains. Meant for repairs: points logged while this runs may be counted twice.
+     */
+    public void rebuildEcoPoints(String userId, OnCompleteListener<Integer> listener) {
+        DocumentReference userRef = db.collection("users").document(userId);
+        getLedgerBalance(userId, balanceTask -> {
+            if (!balanceTask.isSuccessful()) {
+                listener.onComplete(Tasks.forException(balanceTask.getException()));
+                return;
+            }
+            double balance = balanceTask.getResult();
+            WriteBatch batch = db.batch();
+            for (int shard = 0; shard < POINT_SHARD_COUNT; shard++) {
+                Map<String, Object> shardMap = new HashMap<>();
+                shardMap.put("points", 0);
+                batch.set(getPointShardRef(userId, shard), shardMap);
+            }
+            Map<String, Object> userMap = new HashMap<>();
+            userMap.put("ecoPoints", balance);
+            userMap.put("ecoPointsFoldedAt", System.currentTimeMillis());
+            batch.set(userRef, userMap, SetOptions.merge());
+            batch.commit()
+                    .continueWith(task -> {
+                        invalidateRequest(userReadKey(userId));
+                        if (!task.isSuccessful()) {
+                            throw task.getException();
+                        }
+                        return DocumentCodecs.roundPoints(balance);
+                    })
+                    .addOnCompleteListener(listener);
+        });
+    }
+
+    /**
+     * Folds ledger events recorded more than POINT_EVENT_RETENTION_MS ago into a new snapshot under
+     * users/{uid}/pointSnapshots and deletes them, a page at a time. Snapshots are numbered; each
+     * transaction only creates the next number, so two devices compacting at once cannot both fold a page.
+     * The listener receives the balance of the newest snapshot.
+     */
+    public void compactPointEvents(String userId, OnCompleteListener<Double> listener) {
+        Timestamp cutoff = new Timestamp(new Date(System.currentTimeMillis() - POINT_EVENT_RETENTION_MS));
+        compactPointEventsPage(userId, cutoff)
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        Map<String, Object> userMap = new HashMap<>();
+                        userMap.put("pointsCompactedAt", System.currentTimeMillis());
+                        db.collection("users").document(userId).set(userMap, SetOptions.merge());
+                    } else {
+                        Log.e(TAG, "Error compacting point events for " + userId, task.getException());
+                    }
+                    listener.onComplete(task);
+                });
+    }
+
+    // Compacts at most once per POINT_COMPACTION_INTERVAL_MS, so screens can call this on every open; the listener gets null when nothing ran
+    public void compactPointEventsIfStale(DocumentSnapshot userDoc, OnCompleteListener<Double> listener) {
+        Long compactedAt = userDoc.getLong("pointsCompactedAt");
+        // Wait for the first fold to write the opening snapshot, or compaction would number past it
+        if (!userDoc.contains("ledgerOpenedAt")) {
+            listener.onComplete(Tasks.forResult(null));
+            return;
+        }
+        if (compactedAt != null && System.currentTimeMillis() - compactedAt < POINT_COMPACTION_INTERVAL_MS) {
+            listener.onComplete(Tasks.forResult(null));
+            return;
+        }
+        compactPointEvents(userDoc.getId(), listener);
+    }
+
+    private Task<Double> compactPointEventsPage(String userId, Timestamp cutoff) {
+        Task<DocumentSnapshot> latestTask = getLatestPointSnapshot(userId);
+        Task<QuerySnapshot> eventsTask = getPointEventsRef(userId)
+                .whereLessThan("recordedAt", cutoff)
+                .orderBy("recordedAt")
+                .limit(POINT_COMPACTION_PAGE)
+                .get();
+
+        return Tasks.whenAllSuccess(latestTask, eventsTask).continueWithTask(readTask -> {
+            if (!readTask.isSuccessful()) {
+                return Tasks.forException(readTask.getException());
+            }
+            DocumentSnapshot latest = latestTask.getResult();
+            List<DocumentSnapshot> events = eventsTask.getResult().getDocuments();
+            long sequence = latest != null && latest.getLong("sequence") != null ? latest.getLong("sequence") : 0;
+            double base = latest != null && latest.getDouble("balance") != null ? latest.getDouble("balance") : 0.0;
+            if (events.isEmpty()) {
+                return Tasks.forResult(base);
+            }
+
+            DocumentReference nextRef = getPointSnapshotsRef(userId).document(String.valueOf(sequence + 1));
+            return db.runTransaction(transaction -> {
+                if (transaction.get(nextRef).exists()) {
+                    // Another compaction got here first; its snapshot already covers these events
+                    return null;
+                }
+                List<DocumentSnapshot> current = new ArrayList<>();
+                for (DocumentSnapshot event : events) {
+                    current.add(transaction.get(event.getReference()));
+                }
+
+                double balance = base;
+                long eventCount = latest != null && latest.getLong("eventCount") != null ? latest.getLong("eventCount") : 0;
+                Timestamp through = null;
+                for (DocumentSnapshot event : current) {
+                    if (!event.exists()) continue;
+                    Double delta = event.getDouble("delta");
+                    balance += delta != null ? delta : 0.0;
+                    eventCount++;
+                    through = event.getTimestamp("recordedAt");
+                    transaction.delete(event.getReference());
+                }
+
+                Map<String, Object> snapshotMap = new HashMap<>();
+                snapshotMap.put("sequence", sequence + 1);
+                snapshotMap.put("balance", balance);
+                snapshotMap.put("eventCount", eventCount);
+                snapshotMap.put("compactedThrough", through);
+                snapshotMap.put("createdAt", FieldValue.serverTimestamp());
+                transaction.set(nextRef, snapshotMap);
+                return balance;
+            }).continueWithTask(task -> {
+                if (!task.isSuccessful()) {
+                    return Tasks.forException(task.getException());
+                }
+                // A full page may mean more old events are waiting; a lost race re-reads the new latest snapshot
+                if (task.getResult() == null || events.size() == POINT_COMPACTION_PAGE) {
+                    return compactPointEventsPage(userId, cutoff);
+                }
+                return Tasks.forResult(task.getResult());
+            });
+        });
+    }
+
+    // Null when the ledger has never been compacted
+    private Task<DocumentSnapshot> getLatestPointSnapshot(String userId) {
+        return getPointSnapshotsRef(userId)
+                .orderBy("sequence", Query.Direction.DESCENDING)
+                .limit(1)
+                .get()
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    List<DocumentSnapshot> documents = task.getResult().getDocuments();
+                    return documents.isEmpty() ? null : documents.get(0);
+                });
+    }
+
     public void updateUserStreak(String userId, int newStreak, OnCompleteListener<Void> listener) {
+        updateUserStreak(userId, newStreak, Collections.<String, Object>emptyMap(), listener);
+    }
+
+    // Writes the streak with the day markers StreakEngine needs to advance it on the next log
+    public void updateUserStreak(String userId, StreakEngine.State state, OnCompleteListener<Void> listener) {
+        updateUserStreak(userId, state.streak, state.toFields(), listener);
+    }
+
+    private void updateUserStreak(String userId, int newStreak, Map<String, Object> extraFields,
+                                  OnCompleteListener<Void> listener) {
+        invalidateRequest(userReadKey(userId));
+        Map<String, Object> updates = new HashMap<>(extraFields);
+        updates.put("currentStreak", newStreak);
         db.collection("users").document(userId)
-                .update("currentStreak", newStreak)
+                .update(updates)
                 .addOnCompleteListener(listener);
     }
 
     // Household operations
+    /**
+     * Creates the household and points each resident's users/{uid}.householdId at it in one batch.
+     * Household ecoPoints start at 0 and grow by the points residents earn while they are members.
+     */
     public void saveHousehold(Household household, OnCompleteListener<DocumentReference> listener) {
-        Map<String, Object> householdMap = new HashMap<>();
-        householdMap.put("householdSize", household.getHouseholdSize());
-        householdMap.put("majorAppliances", household.getMajorAppliances() != null ? household.getMajorAppliances() : new ArrayList<String>());
-        householdMap.put("previousMonthWaterUsage", household.getPreviousMonthWaterUsage());
-        householdMap.put("previousMonthElectricityUsage", household.getPreviousMonthElectricityUsage());
-        householdMap.put("residents", household.getResidents() != null ? household.getResidents() : new ArrayList<String>());
+        Map<String, Object> householdMap = codecs.encodeHousehold(household);
         householdMap.put("createdAt", household.getCreatedAt());
-        householdMap.put("updatedAt", System.currentTimeMillis());
-        householdMap.put("pastMonthWaterUsageMood", household.getPastMonthWaterUsageMood());
-        householdMap.put("pastMonthElectricityUsageMood", household.getPastMonthElectricityUsageMood());
+        householdMap.put("ecoPoints", 0);
+
+        DocumentReference householdRef = db.collection("households").document();
+        WriteBatch batch = db.batch();
+        batch.set(householdRef, householdMap);
+        if (household.getResidents() != null) {
+            for (String residentId : household.getResidents()) {
+                stageUserHousehold(batch, residentId, householdRef.getId());
+            }
+        }
 
         Log.d(TAG, "Saving household to Firestore");
-        db.collection("households")
-                .add(householdMap)
+        batch.commit()
+                .continueWithTask(task -> task.isSuccessful()
+                        ? Tasks.forResult(householdRef)
+                        : Tasks.<DocumentReference>forException(task.getException()))
                 .addOnCompleteListener(task -> {
+                    invalidateReads("households");
+                    invalidateReads("users");
                     if (task.isSuccessful() && task.getResult() != null) {
                         Log.d(TAG, "Household saved successfully with ID: " + task.getResult().getId());
                         household.setHouseholdId(task.getResult().getId());
@@ -114,61 +655,165 @@ public class FirebaseHelper {
     }
 
     public void updateHousehold(String householdId, Household household, OnCompleteListener<Void> listener) {
-        Map<String, Object> householdMap = new HashMap<>();
-        householdMap.put("householdSize", household.getHouseholdSize());
-        householdMap.put("majorAppliances", household.getMajorAppliances() != null ? household.getMajorAppliances() : new ArrayList<String>());
-        householdMap.put("previousMonthWaterUsage", household.getPreviousMonthWaterUsage());
-        householdMap.put("previousMonthElectricityUsage", household.getPreviousMonthElectricityUsage());
-        householdMap.put("residents", household.getResidents() != null ? household.getResidents() : new ArrayList<String>());
-        householdMap.put("updatedAt", System.currentTimeMillis());
-        householdMap.put("pastMonthWaterUsageMood", household.getPastMonthWaterUsageMood());
-        householdMap.put("pastMonthElectricityUsageMood", household.getPastMonthElectricityUsageMood());
+        Map<String, Object> householdMap = codecs.encodeHousehold(household);
 
         Log.d(TAG, "Updating household: " + householdId);
+        // Merge so fields maintained elsewhere (createdAt, ecoPoints) survive the update
         db.collection("households").document(householdId)
-                .set(householdMap)
-                .addOnCompleteListener(listener);
+                .set(householdMap, SetOptions.merge())
+                .addOnCompleteListener(task -> {
+                    invalidateReads("households");
+                    listener.onComplete(task);
+                });
     }
 
     public void getHousehold(String householdId, OnCompleteListener<DocumentSnapshot> listener) {
-        db.collection("households").document(householdId)
-                .get()
+        coalescedGet(db.collection("households").document(householdId))
                 .addOnCompleteListener(listener);
     }
 
     public void getHouseholdByResident(String userId, OnCompleteListener<QuerySnapshot> listener) {
+        coalescedGet("households", db.collection("households").whereArrayContains("residents", userId))
+                .addOnCompleteListener(listener);
+    }
+
+    /**
+     * One-off backfill for households created before users carried householdId. For the household listing
+     * userId as a resident, in one transaction: residents without users/{uid}.householdId get it, and a
+     * household without ecoPoints is seeded with the sum of its residents' folded totals (points still in
+     * shards reach it through the next fold). Without this such households are left out of the
+     * ecoPoints-ordered board and their residents' folds never credit them.
+     * The listener receives whether anything was written.
+     */
+    public void backfillUserHousehold(String userId, OnCompleteListener<Boolean> listener) {
         db.collection("households")
                 .whereArrayContains("residents", userId)
+                .limit(1)
                 .get()
-                .addOnCompleteListener(listener);
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        return Tasks.<Boolean>forException(task.getException());
+                    }
+                    if (task.getResult().isEmpty()) {
+                        return Tasks.forResult(false);
+                    }
+                    DocumentReference householdRef = task.getResult().getDocuments().get(0).getReference();
+                    return db.runTransaction(transaction -> {
+                        DocumentSnapshot household = transaction.get(householdRef);
+                        Object residentsObj = household.get("residents");
+                        List<DocumentSnapshot> residents = new ArrayList<>();
+                        if (residentsObj instanceof List) {
+                            for (Object residentId : (List<?>) residentsObj) {
+                                residents.add(transaction.get(db.collection("users").document(String.valueOf(residentId))));
+                            }
+                        }
+
+                        boolean changed = false;
+                        double total = 0.0;
+                        for (DocumentSnapshot resident : residents) {
+                            Double points = resident.getDouble("ecoPoints");
+                            total += points != null ? points : 0.0;
+                            if (resident.exists() && resident.getString("householdId") == null) {
+                                Map<String, Object> userMap = new HashMap<>();
+                                userMap.put("householdId", householdRef.getId());
+                                transaction.set(resident.getReference(), userMap, SetOptions.merge());
+                                changed = true;
+                            }
+                        }
+                        if (!household.contains("ecoPoints")) {
+                            Map<String, Object> householdMap = new HashMap<>();
+                            householdMap.put("ecoPoints", total);
+                            transaction.set(householdRef, householdMap, SetOptions.merge());
+                            changed = true;
+                        }
+                        return changed;
+                    });
+                })
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful() && Boolean.TRUE.equals(task.getResult())) {
+                        invalidateReads("households");
+                        invalidateReads("users");
+                    }
+                    listener.onComplete(task);
+                });
     }
 
     public void addResidentToHousehold(String householdId, String userId, OnCompleteListener<Void> listener) {
-        db.collection("households").document(householdId)
-                .update("residents", FieldValue.arrayUnion(userId))
-                .addOnCompleteListener(listener);
+        WriteBatch batch = db.batch();
+        batch.update(db.collection("households").document(householdId), "residents", FieldValue.arrayUnion(userId));
+        stageUserHousehold(batch, userId, householdId);
+        batch.commit().addOnCompleteListener(task -> {
+            invalidateReads("households");
+            invalidateRequest(userReadKey(userId));
+            listener.onComplete(task);
+        });
     }
 
     public void removeResidentFromHousehold(String householdId, String userId, OnCompleteListener<Void> listener) {
-        db.collection("households").document(householdId)
-                .update("residents", FieldValue.arrayRemove(userId))
+        WriteBatch batch = db.batch();
+        batch.update(db.collection("households").document(householdId), "residents", FieldValue.arrayRemove(userId));
+        stageUserHousehold(batch, userId, null);
+        batch.commit().addOnCompleteListener(task -> {
+            invalidateReads("households");
+            invalidateRequest(userReadKey(userId));
+            listener.onComplete(task);
+        });
+    }
+
+    /**
+     * Records a monthly check-in as one batched write: the household's current month usage and the
+     * check-in points as a server-side increment, so confirming costs a single round trip and two
+     * residents checking in at once cannot overwrite each other's points.
+     * household is the document the screen already loaded; the mood and last month's water usage it
+     * carries only change through the questionnaire. The listener receives the points awarded.
+     */
+    public void checkIn(String userId, DocumentSnapshot household, double newWater, double newElectric,
+                        OnCompleteListener<Double> listener) {
+        double pointsDelta = checkInPoints(household, newWater);
+
+        WriteBatch batch = db.batch();
+        Map<String, Object> usageMap = new HashMap<>();
+        usageMap.put("currentMonthWaterUsage", newWater);
+        usageMap.put("currentMonthElectricityUsage", newElectric);
+        batch.set(household.getReference(), usageMap, SetOptions.merge());
+        stageEcoPoints(batch, userId, pointsDelta, POINTS_REASON_CHECK_IN);
+
+        batch.commit()
+                .continueWith(task -> {
+                    invalidateReads("households");
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    return pointsDelta;
+                })
                 .addOnCompleteListener(listener);
     }
 
+    // Households that rated last month's water use as bad win or lose 20 points depending on whether it went down
+    private double checkInPoints(DocumentSnapshot household, double newWater) {
+        Object mood = household.get("pastMonthWaterUsageMood");
+        if (!"Bad".equals(mood != null ? String.valueOf(mood) : "")) {
+            return 0.0;
+        }
+        Double prevMonthWater = household.getDouble("previousMonthWaterUsage");
+        return newWater <= (prevMonthWater != null ? prevMonthWater : 0.0) ? 20.0 : -20.0;
+    }
+
+    // users/{uid}.householdId tells the points fold which household total to increment
+    private void stageUserHousehold(WriteBatch batch, String userId, String householdId) {
+        Map<String, Object> userMap = new HashMap<>();
+        userMap.put("householdId", householdId != null ? householdId : FieldValue.delete());
+        batch.set(db.collection("users").document(userId), userMap, SetOptions.merge());
+    }
+
     // Goal operations
     public void saveGoal(Goal goal, OnCompleteListener<DocumentReference> listener) {
-        Map<String, Object> goalMap = new HashMap<>();
-        goalMap.put("userId", goal.getUserId());
-        goalMap.put("activityName", goal.getActivityName());
-        goalMap.put("targetLimit", goal.getTargetLimit());
-        goalMap.put("type", goal.getType());
-        goalMap.put("frequency", goal.getFrequency());
-        goalMap.put("unit", goal.getUnit());
-        goalMap.put("createdAt", goal.getCreatedAt());
+        Map<String, Object> goalMap = codecs.encodeGoal(goal);
 
         db.collection("goals")
                 .add(goalMap)
                 .addOnCompleteListener(task -> {
+                    invalidateReads("goals");
                     if (task.isSuccessful() && task.getResult() != null) {
                         goal.setGoalId(task.getResult().getId());
                     }
@@ -176,60 +821,621 @@ public class FirebaseHelper {
                 });
     }
 
+    /**
+     * Commits everything staged during onboarding (see OnboardingDraft): the household, the user's profile
+     * with setupComplete and selectedGoals, and the activities. Up to about MAX_BATCH_WRITES goals this is
+     * one atomic batch. Larger lists are committed in chunks, in order, with the household and user in the
+     * last one, so setupComplete is never set while goals are missing. household may be null.
+     * Ids are assigned to the passed goals and household before committing, so retrying with the same
+     * objects overwrites instead of duplicating.
+     */
+    public void commitOnboarding(String userId, Household household, List<Goal> goals, List<String> selectedGoals,
+                                 OnCompleteListener<Void> listener) {
+        List<DocumentReference> refs = new ArrayList<>();
+        for (Goal goal : goals) {
+            DocumentReference ref = goal.getGoalId() != null
+                    ? db.collection(ACTIVITIES_COLLECTION).document(goal.getGoalId())
+                    : db.collection(ACTIVITIES_COLLECTION).document();
+            goal.setGoalId(ref.getId());
+            refs.add(ref);
+        }
+
+        Map<String, Object> userMap = new HashMap<>();
+        userMap.put("setupComplete", true);
+        userMap.put("hasCompletedQuestionnaire", true);
+        if (selectedGoals != null && !selectedGoals.isEmpty()) {
+            userMap.put("selectedGoals", selectedGoals);
+        }
+
+        Map<String, Object> householdMap = null;
+        DocumentReference householdRef = null;
+        if (household != null) {
+            householdRef = household.getHouseholdId() != null
+                    ? db.collection("households").document(household.getHouseholdId())
+                    : db.collection("households").document();
+            household.setHouseholdId(householdRef.getId());
+            // Copied because the codec's map is reused and the last batch may commit after later encodes
+            householdMap = new HashMap<>(codecs.encodeHousehold(household));
+            householdMap.put("createdAt", household.getCreatedAt());
+            householdMap.put("ecoPoints", 0);
+
+            // The questionnaire answers double as the user's profile
+            userMap.put("householdId", householdRef.getId());
+            userMap.put("householdSize", household.getHouseholdSize());
+            userMap.put("majorAppliances", household.getMajorAppliances());
+            userMap.put("previousMonthWaterUsage", household.getPreviousMonthWaterUsage());
+            userMap.put("previousMonthElectricityUsage", household.getPreviousMonthElectricityUsage());
+        }
+
+        DocumentReference finalHouseholdRef = householdRef;
+        Map<String, Object> finalHouseholdMap = householdMap;
+        commitGoalChunks(userId, goals, refs, 0, batch -> {
+            if (finalHouseholdRef != null) {
+                batch.set(finalHouseholdRef, finalHouseholdMap);
+            }
+            batch.set(db.collection("users").document(userId), userMap, SetOptions.merge());
+        }, 2).addOnCompleteListener(task -> {
+            invalidateRequest(userReadKey(userId));
+            invalidateReads(ACTIVITIES_COLLECTION);
+            invalidateReads("households");
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Error committing onboarding for " + userId, task.getException());
+            }
+            listener.onComplete(task);
+        });
+    }
+
+    // Commits goals from start on; finalWrites (at most reservedWrites of them) ride in the last batch
+    private Task<Void> commitGoalChunks(String userId, List<Goal> goals, List<DocumentReference> refs, int start,
+                                        Consumer<WriteBatch> finalWrites, int reservedWrites) {
+        boolean last = goals.size() - start <= MAX_BATCH_WRITES - reservedWrites;
+        int end = last ? goals.size() : start + MAX_BATCH_WRITES;
+
+        WriteBatch batch = db.batch();
+        for (int i = start; i < end; i++) {
+            Goal goal = goals.get(i);
+            Map<String, Object> activityMap = new HashMap<>();
+            activityMap.put("activityName", goal.getActivityName());
+            activityMap.put("targetLimit", goal.getTargetLimit());
+            activityMap.put("type", goal.getType());
+            activityMap.put("frequency", goal.getFrequency());
+            activityMap.put("unit", goal.getUnit());
+            activityMap.put("userId", userId);
+            batch.set(refs.get(i), activityMap);
+        }
+        if (last) {
+            finalWrites.accept(batch);
+            return batch.commit();
+        }
+
+        return batch.commit().continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                return Tasks.forException(task.getException());
+            }
+            return commitGoalChunks(userId, goals, refs, end, finalWrites, reservedWrites);
+        });
+    }
+
     public void getGoals(String userId, OnCompleteListener<QuerySnapshot> listener) {
-        db.collection("goals")
+        coalescedGet("goals", db.collection("goals")
                 .whereEqualTo("userId", userId)
-                .orderBy("createdAt", Query.Direction.DESCENDING)
-                .get()
+                .orderBy("createdAt", Query.Direction.DESCENDING))
                 .addOnCompleteListener(listener);
     }
 
-    public void deleteGoal(String goalId, OnCompleteListener<Void> listener) {
-        db.collection("goals").document(goalId)
-                .delete()
+    // The user's activities (goals created during onboarding), which logs reference by activityId
+    public void getActivities(String userId, OnCompleteListener<QuerySnapshot> listener) {
+        coalescedGet(ACTIVITIES_COLLECTION, db.collection(ACTIVITIES_COLLECTION).whereEqualTo("userId", userId))
                 .addOnCompleteListener(listener);
     }
 
-    // Usage Log operations
-    public void saveUsageLog(UsageLog log, OnCompleteListener<DocumentReference> listener) {
-        Map<String, Object> logMap = new HashMap<>();
-        logMap.put("userId", log.getUserId());
-        logMap.put("goalId", log.getGoalId());
-        logMap.put("activityName", log.getActivityName());
-        logMap.put("usageAmount", log.getUsageAmount());
-        logMap.put("type", log.getType());
-        logMap.put("timestamp", log.getTimestamp());
-        logMap.put("ecoPointsEarned", log.getEcoPointsEarned());
-        logMap.put("metGoal", log.isMetGoal());
-
-        db.collection("usageLogs")
-                .add(logMap)
+    public void deleteGoal(String goalId, OnCompleteListener<Void> listener) {
+        db.collection("goals").document(goalId)
+                .delete()
                 .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        log.setLogId(task.getResult().getId());
-                    }
+                    invalidateReads("goals");
                     listener.onComplete(task);
                 });
     }
 
+    // Usage Log operations
+    public void saveUsageLog(UsageLog log, OnCompleteListener<Void> listener) {
+        Map<String, Object> logMap = usageLogToMap(log, LOGS_COLLECTION);
+
+        DocumentReference logRef = db.collection(LOGS_COLLECTION).document();
+        log.setLogId(logRef.getId());
+
+        // The log and its rollup increments land together or not at all
+        WriteBatch batch = db.batch();
+        batch.set(logRef, logMap);
+        stageUsageRollups(batch, log, log.getEcoPointsEarned());
+        batch.commit().addOnCompleteListener(task -> {
+            invalidateReads(LOGS_COLLECTION);
+            invalidateReads(ROLLUPS_COLLECTION + "/" + log.getUserId());
+            listener.onComplete(task);
+        });
+    }
+
     public void getUsageLogs(String userId, OnCompleteListener<QuerySnapshot> listener) {
-        db.collection("usageLogs")
+        coalescedGet(LOGS_COLLECTION, db.collection(LOGS_COLLECTION)
+                .whereEqualTo("userId", userId)
+                .orderBy("timestamp", Query.Direction.DESCENDING))
+                .addOnCompleteListener(listener);
+    }
+
+    // Paged log queries, newest first. Pass the last document of the previous page as the cursor, or null for the first page.
+    public void getUsageLogsPage(String collection, String userId, int pageSize, DocumentSnapshot startAfter,
+                                 OnCompleteListener<QuerySnapshot> listener) {
+        Query query = logsPageQuery(collection, userId, pageSize);
+        if (startAfter != null) {
+            query = query.startAfter(startAfter);
+        }
+        coalescedGet(collection, query).addOnCompleteListener(listener);
+    }
+
+    // Same as above, resuming after the (timestamp, id) of the last log when the previous page came from the local store
+    public void getUsageLogsPage(String collection, String userId, int pageSize, Timestamp startAfter, String startAfterId,
+                                 OnCompleteListener<QuerySnapshot> listener) {
+        coalescedGet(collection, logsPageQuery(collection, userId, pageSize).startAfter(startAfter, startAfterId))
+                .addOnCompleteListener(listener);
+    }
+
+    // The document id breaks timestamp ties, matching LocalLogStore's (timestamp, log_id) order
+    private Query logsPageQuery(String collection, String userId, int pageSize) {
+        return db.collection(collection)
                 .whereEqualTo("userId", userId)
                 .orderBy("timestamp", Query.Direction.DESCENDING)
-                .get()
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)
+                .limit(pageSize);
+    }
+
+    /**
+     * The user's logs with timestamps in range, newest first. limit 0 means no limit.
+     * The Android SDK cannot project fields, so keep ranges tight and prefer rollups or
+     * aggregateLogs when only totals are needed.
+     */
+    public void getUsageLogsInRange(String userId, TimeRange range, int limit, OnCompleteListener<QuerySnapshot> listener) {
+        Query query = range.applyTo(db.collection(LOGS_COLLECTION).whereEqualTo("userId", userId), "timestamp")
+                .orderBy("timestamp", Query.Direction.DESCENDING);
+        if (limit > 0) {
+            query = query.limit(limit);
+        }
+        coalescedGet(LOGS_COLLECTION, query).addOnCompleteListener(listener);
+    }
+
+    public void getUsageLogsForMonth(String userId, Date month, OnCompleteListener<QuerySnapshot> listener) {
+        getUsageLogsInRange(userId, TimeRange.monthOf(month), 0, listener);
+    }
+
+    // Usage rollups
+
+    /**
+     * Stages increments of the day, ISO week and month rollup documents covering the log's timestamp.
+     * Stats screens read one of these documents instead of summing every log in the window.
+     */
+    public void stageUsageRollups(WriteBatch batch, UsageLog log, double ecoPoints) {
+        stageUsageRollups(batch::set, log, ecoPoints);
+    }
+
+    private void stageUsageRollups(MergeWriter writer, UsageLog log, double ecoPoints) {
+        Date date = log.getTimestamp() != null ? log.getTimestamp().toDate() : new Date();
+
+        Map<String, Object> rollupMap = new HashMap<>();
+        rollupMap.put("logCount", FieldValue.increment(1));
+        rollupMap.put("ecoPoints", FieldValue.increment(ecoPoints));
+        rollupMap.put("goalsMet", FieldValue.increment(log.isMetGoal() ? 1 : 0));
+        if (log.getType() != null) {
+            Map<String, Object> usage = new HashMap<>();
+            usage.put(log.getType(), FieldValue.increment(log.getUsageAmount()));
+            rollupMap.put("usage", usage);
+
+            double saved = log.getTargetLimit() - log.getUsageAmount();
+            if (log.isMetGoal() && saved > 0) {
+                Map<String, Object> savedMap = new HashMap<>();
+                savedMap.put(log.getType(), FieldValue.increment(saved));
+                rollupMap.put("saved", savedMap);
+            }
+        }
+
+        String[] bucketIds = {
+                UsagePeriods.dayBucketId(date),
+                UsagePeriods.weekBucketId(date),
+                UsagePeriods.monthBucketId(date)
+        };
+        for (String bucketId : bucketIds) {
+            writer.set(getUsageRollupRef(log.getUserId(), bucketId), rollupMap, SetOptions.merge());
+        }
+    }
+
+    public DocumentReference getUsageRollupRef(String userId, String bucketId) {
+        return db.collection(ROLLUPS_COLLECTION).document(userId)
+                .collection("buckets").document(bucketId);
+    }
+
+    public void getUsageRollup(String userId, String bucketId, OnCompleteListener<DocumentSnapshot> listener) {
+        coalescedGet(getUsageRollupRef(userId, bucketId))
+                .addOnCompleteListener(listener);
+    }
+
+    // Reads a per-type total such as usage.Water out of a rollup document, 0 if the bucket is empty
+    public double getRollupTotal(DocumentSnapshot rollup, String field, String type) {
+        if (rollup == null || !rollup.exists()) {
+            return 0.0;
+        }
+        Double total = rollup.getDouble(field + "." + type);
+        return total != null ? total : 0.0;
+    }
+
+    // Usage aggregates
+
+    // Summed usageAmount per type in range, one aggregate query per type run in parallel
+    public void getUsageTotalsByType(String userId, List<String> types, TimeRange range,
+                                     OnCompleteListener<Map<String, Double>> listener) {
+        List<Task<AggregateQuerySnapshot>> tasks = new ArrayList<>();
+        for (String type : types) {
+            tasks.add(aggregateLogs(userId, type, null, range));
+        }
+        Tasks.whenAllSuccess(tasks)
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    Map<String, Double> totals = new HashMap<>();
+                    for (int i = 0; i < types.size(); i++) {
+                        totals.put(types.get(i), getAggregateSum(tasks.get(i).getResult(), USAGE_SUM));
+                    }
+                    return totals;
+                })
                 .addOnCompleteListener(listener);
     }
 
-    public void getUsageLogsForMonth(String userId, long startTimestamp, long endTimestamp, OnCompleteListener<QuerySnapshot> listener) {
-        db.collection("usageLogs")
+    /**
+     * Sums and counts the user's logs in range on the server, optionally narrowed to one type and to
+     * logs that met (or missed) their goal. One small result however many logs match; stats screens use it
+     * when a period has no rollup document. Needs a composite index on userId, type, metGoal and timestamp.
+     */
+    public Task<AggregateQuerySnapshot> aggregateLogs(String userId, String type, Boolean metGoal, TimeRange range) {
+        Query query = db.collection(LOGS_COLLECTION).whereEqualTo("userId", userId);
+        if (type != null) {
+            query = query.whereEqualTo("type", type);
+        }
+        if (metGoal != null) {
+            query = query.whereEqualTo("metGoal", metGoal);
+        }
+        return range.applyTo(query, "timestamp")
+                .aggregate(AggregateField.count(), USAGE_SUM, TARGET_SUM, POINTS_SUM)
+                .get(AggregateSource.SERVER);
+    }
+
+    public double getAggregateSum(AggregateQuerySnapshot snapshot, AggregateField.SumAggregateField field) {
+        if (snapshot == null) {
+            return 0.0;
+        }
+        Double sum = snapshot.getDouble(field);
+        return sum != null ? sum : 0.0;
+    }
+
+    // Goal completion bitsets
+
+    public DocumentReference getGoalDaysRef(String userId, String goalId) {
+        return db.collection("users").document(userId).collection(GOAL_DAYS_COLLECTION).document(goalId);
+    }
+
+    /**
+     * The days a goal was met, e.g. for DailyBitset.longestStreak, completionRate or monthMask.
+     * One small document however long the history; empty if no met log has been flushed for the goal yet.
+     */
+    public void getGoalDays(String userId, String goalId, OnCompleteListener<DailyBitset> listener) {
+        getGoalDaysRef(userId, goalId).get()
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    return toDailyBitset(task.getResult());
+                })
+                .addOnCompleteListener(listener);
+    }
+
+    /**
+     * Sets the bits of every met log already in the logs collection, for goals whose history predates
+     * the bitset. Reads the goal's met logs once; bits set meanwhile by a flush are kept.
+     */
+    public void rebuildGoalDays(String userId, String goalId, OnCompleteListener<DailyBitset> listener) {
+        db.collection(LOGS_COLLECTION)
                 .whereEqualTo("userId", userId)
-                .whereGreaterThanOrEqualTo("timestamp", startTimestamp)
-                .whereLessThanOrEqualTo("timestamp", endTimestamp)
+                .whereEqualTo("activityId", goalId)
+                .whereEqualTo("metGoal", true)
                 .get()
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        return Tasks.<DailyBitset>forException(task.getException());
+                    }
+                    List<Long> metDays = new ArrayList<>();
+                    for (QueryDocumentSnapshot document : task.getResult()) {
+                        Timestamp timestamp = document.getTimestamp("timestamp");
+                        if (timestamp != null) {
+                            metDays.add(StreakEngine.epochDay(timestamp.toDate()));
+                        }
+                    }
+                    DocumentReference ref = getGoalDaysRef(userId, goalId);
+                    return db.runTransaction(transaction -> {
+                        DailyBitset days = toDailyBitset(transaction.get(ref));
+                        for (long day : metDays) {
+                            days.set(day);
+                        }
+                        transaction.set(ref, goalDaysToMap(days));
+                        return days;
+                    });
+                })
                 .addOnCompleteListener(listener);
     }
 
+    private static DailyBitset toDailyBitset(DocumentSnapshot document) {
+        Blob bits = document.getBlob("days");
+        Long originDay = document.getLong("originDay");
+        if (bits == null || originDay == null) {
+            return new DailyBitset();
+        }
+        return DailyBitset.fromBytes(originDay, bits.toBytes());
+    }
+
+    private static Map<String, Object> goalDaysToMap(DailyBitset days) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("originDay", days.getOriginDay());
+        map.put("days", Blob.fromBytes(days.toBytes()));
+        map.put("updatedAt", FieldValue.serverTimestamp());
+        return map;
+    }
+
+    // Local log store sync
+
+    /**
+     * Pushes logs that were written locally but never acknowledged, then pulls every log newer than
+     * the per-user high-water mark into the local store. Only deltas cross the network.
+     */
+    public void syncUsageLogs(LocalLogStore store, String userId, OnCompleteListener<Void> listener) {
+        // A sync already running for this user covers any caller that arrives meanwhile
+        coalesce("sync:" + userId, 0, () -> startUsageLogSync(store, userId))
+                .addOnCompleteListener(listener);
+    }
+
+    private Task<Void> startUsageLogSync(LocalLogStore store, String userId) {
+        return pushAllPendingLogs(store, userId)
+                .continueWithTask(pushTask -> {
+                    if (!pushTask.isSuccessful()) {
+                        Log.w(TAG, "Push of pending logs failed, pulling anyway", pushTask.getException());
+                    }
+                    List<Task<Void>> pulls = new ArrayList<>();
+                    for (String collection : SYNCED_LOG_COLLECTIONS) {
+                        pulls.add(pullLogDeltas(store, userId, collection));
+                    }
+                    return Tasks.whenAll(pulls);
+                })
+                .addOnCompleteListener(task -> {
+                    if (!task.isSuccessful()) {
+                        Log.e(TAG, "Error syncing usage logs", task.getException());
+                    }
+                });
+    }
+
+    /**
+     * Drains the local outbound queue (see LocalLogStore.enqueueLog) without pulling anything.
+     * Safe to call repeatedly, e.g. whenever connectivity returns: queued logs are applied at most once.
+     */
+    public void flushPendingLogs(LocalLogStore store, String userId, OnCompleteListener<Void> listener) {
+        pushAllPendingLogs(store, userId).addOnCompleteListener(listener);
+    }
+
+    private Task<Void> pushAllPendingLogs(LocalLogStore store, String userId) {
+        // One flush per user at a time, shared by the sync and the connectivity trigger
+        return coalesce("push:" + userId, 0, () -> pushUntilDrained(store, userId));
+    }
+
+    /**
+     * Pushes every collection's queue, then looks again: a caller that joined the flush after it read the
+     * queue would otherwise wait for the next trigger with its row. After a successful pass everything read
+     * was marked synced, so anything still pending was enqueued meanwhile; a failed pass is not retried here.
+     */
+    private Task<Void> pushUntilDrained(LocalLogStore store, String userId) {
+        List<Task<Void>> pushes = new ArrayList<>();
+        for (String collection : SYNCED_LOG_COLLECTIONS) {
+            pushes.add(pushPendingLogs(store, userId, collection));
+        }
+        return Tasks.whenAll(pushes).continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                return task;
+            }
+            for (String collection : SYNCED_LOG_COLLECTIONS) {
+                if (!store.getPendingLogs(userId, collection).isEmpty()) {
+                    return pushUntilDrained(store, userId);
+                }
+            }
+            return task;
+        });
+    }
+
+    private Task<Void> pushPendingLogs(LocalLogStore store, String userId, String collection) {
+        Map<String, Double> queuedPoints = store.getQueuedPoints(userId, collection);
+        List<UsageLog> queued = new ArrayList<>();
+        List<UsageLog> pending = new ArrayList<>();
+        for (UsageLog log : store.getPendingLogs(userId, collection)) {
+            if (queuedPoints.containsKey(log.getLogId())) {
+                queued.add(log);
+            } else {
+                pending.add(log);
+            }
+        }
+
+        List<Task<Void>> commits = new ArrayList<>();
+        if (!queued.isEmpty()) {
+            commits.add(applyQueuedLogs(store, collection, queued, queuedPoints, 0));
+        }
+        for (int start = 0; start < pending.size(); start += MAX_BATCH_WRITES) {
+            List<UsageLog> chunk = pending.subList(start, Math.min(start + MAX_BATCH_WRITES, pending.size()));
+            WriteBatch batch = db.batch();
+            for (UsageLog log : chunk) {
+                // The log id was generated on the device, so a retried push overwrites instead of duplicating
+                batch.set(db.collection(collection).document(log.getLogId()), usageLogToMap(log, collection));
+            }
+            commits.add(batch.commit().addOnSuccessListener(unused -> {
+                for (UsageLog log : chunk) {
+                    store.markSynced(collection, log.getLogId());
+                }
+            }));
+        }
+        return Tasks.whenAll(commits);
+    }
+
+    /**
+     * Writes queued logs with their rollup and points increments, one transaction per chunk, oldest first.
+     * Each transaction first reads the log documents and skips any that already exist, so an entry
+     * whose earlier flush committed but was never acknowledged is not counted twice.
+     * The streak is advanced here too, from users/{uid} as read by the transaction, so two devices or a
+     * stale profile can never pay the streak bonus twice; the bonus is added to the log's points.
+     */
+    private Task<Void> applyQueuedLogs(LocalLogStore store, String collection, List<UsageLog> queued,
+                                       Map<String, Double> queuedPoints, int start) {
+        if (start >= queued.size()) {
+            return Tasks.forResult(null);
+        }
+        // Newest first from the store; apply in the order they were logged
+        List<UsageLog> chunk = new ArrayList<>();
+        for (int i = start; i < Math.min(start + QUEUE_FLUSH_CHUNK, queued.size()); i++) {
+            chunk.add(queued.get(queued.size() - 1 - i));
+        }
+
+        DocumentReference userRef = db.collection("users").document(chunk.get(0).getUserId());
+        return db.runTransaction(transaction -> {
+            List<UsageLog> missing = new ArrayList<>();
+            for (UsageLog log : chunk) {
+                if (!transaction.get(db.collection(collection).document(log.getLogId())).exists()) {
+                    missing.add(log);
+                }
+            }
+            DocumentSnapshot userDoc = transaction.get(userRef);
+            StreakEngine.State streak = StreakEngine.State.from(userDoc);
+            Map<String, Object> streakBefore = streak.toFields();
+            // All reads come before the first write
+            Map<String, DailyBitset> goalDays = new HashMap<>();
+            for (UsageLog log : missing) {
+                if (log.isMetGoal() && log.getGoalId() != null && !goalDays.containsKey(log.getGoalId())) {
+                    goalDays.put(log.getGoalId(),
+                            toDailyBitset(transaction.get(getGoalDaysRef(log.getUserId(), log.getGoalId()))));
+                }
+            }
+            Set<String> changedGoals = new HashSet<>();
+            for (UsageLog log : missing) {
+                double points = queuedPoints.get(log.getLogId());
+                if (StreakEngine.apply(streak, log.getTimestamp().toDate(), log.isMetGoal())) {
+                    points += GamificationHelper.calculateStreakBonus(streak.streak);
+                }
+                log.setEcoPointsEarned((int) Math.round(points));
+                transaction.set(db.collection(collection).document(log.getLogId()), usageLogToMap(log, collection));
+                stageUsageRollups(transaction::set, log, points);
+                stageEcoPoints(transaction::set, log.getUserId(), points, log.getTimestamp().toDate(),
+                        POINTS_REASON_LOG, log.getLogId());
+                DailyBitset days = goalDays.get(log.getGoalId());
+                if (log.isMetGoal() && days != null && days.set(StreakEngine.epochDay(log.getTimestamp().toDate()))) {
+                    changedGoals.add(log.getGoalId());
+                }
+            }
+            for (String goalId : changedGoals) {
+                transaction.set(getGoalDaysRef(chunk.get(0).getUserId(), goalId), goalDaysToMap(goalDays.get(goalId)));
+            }
+            if (userDoc.exists() && !streak.toFields().equals(streakBefore)) {
+                transaction.set(userRef, streak.toFields(), SetOptions.merge());
+            }
+            return missing.size();
+        }).continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                // Entries stay queued; the next flush retries them with the same ids
+                return Tasks.forException(task.getException());
+            }
+            invalidateReads(collection);
+            invalidateReads(ROLLUPS_COLLECTION + "/" + chunk.get(0).getUserId());
+            invalidateRequest(userReadKey(chunk.get(0).getUserId()));
+            for (UsageLog log : chunk) {
+                store.markSynced(collection, log.getLogId());
+            }
+            if (task.getResult() < chunk.size()) {
+                Log.d(TAG, "Skipped " + (chunk.size() - task.getResult()) + " already applied " + collection + " entries");
+            }
+            return applyQueuedLogs(store, collection, queued, queuedPoints, start + QUEUE_FLUSH_CHUNK);
+        });
+    }
+
+    private Task<Void> pullLogDeltas(LocalLogStore store, String userId, String collection) {
+        long highWaterMark = store.getHighWaterMark(userId, collection);
+        if (highWaterMark == 0) {
+            return pullLatestLogs(store, userId, collection);
+        }
+
+        // >= rather than > so a log sharing the boundary millisecond is never skipped; upserts make the overlap harmless
+        return db.collection(collection)
+                .whereEqualTo("userId", userId)
+                .whereGreaterThanOrEqualTo("timestamp", new Timestamp(new Date(highWaterMark)))
+                .orderBy("timestamp", Query.Direction.ASCENDING)
+                .limit(SYNC_PAGE_SIZE)
+                .get()
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful() || task.getResult() == null) {
+                        return Tasks.forException(task.getException() != null
+                                ? task.getException()
+                                : new IllegalStateException("Empty result pulling " + collection));
+                    }
+
+                    List<UsageLog> logs = new ArrayList<>();
+                    long newest = highWaterMark;
+                    for (QueryDocumentSnapshot document : task.getResult()) {
+                        UsageLog log = documentToUsageLog(document);
+                        logs.add(log);
+                        newest = Math.max(newest, log.getTimestamp().toDate().getTime());
+                    }
+                    store.putSyncedLogs(collection, logs);
+                    store.setHighWaterMark(userId, collection, newest);
+
+                    if (logs.size() < SYNC_PAGE_SIZE || newest == highWaterMark) {
+                        return Tasks.forResult(null);
+                    }
+                    return pullLogDeltas(store, userId, collection);
+                });
+    }
+
+    // First sync on a device: only the newest page is pulled, older history is backfilled by UsageLogPager on scroll
+    private Task<Void> pullLatestLogs(LocalLogStore store, String userId, String collection) {
+        return logsPageQuery(collection, userId, SYNC_PAGE_SIZE)
+                .get()
+                .continueWith(task -> {
+                    if (!task.isSuccessful() || task.getResult() == null) {
+                        throw task.getException() != null
+                                ? task.getException()
+                                : new IllegalStateException("Empty result pulling " + collection);
+                    }
+
+                    List<UsageLog> logs = new ArrayList<>();
+                    long newest = 0;
+                    for (QueryDocumentSnapshot document : task.getResult()) {
+                        UsageLog log = documentToUsageLog(document);
+                        logs.add(log);
+                        newest = Math.max(newest, log.getTimestamp().toDate().getTime());
+                    }
+                    store.putSyncedLogs(collection, logs);
+                    store.setHighWaterMark(userId, collection, newest);
+                    if (logs.size() < SYNC_PAGE_SIZE) {
+                        store.setHistoryComplete(userId, collection, true);
+                    }
+                    return null;
+                });
+    }
+
+    // The returned map is reused by the next call; pass it straight to set/add
+    public Map<String, Object> usageLogToMap(UsageLog log, String collection) {
+        // Logs are keyed by activityId; the legacy usageLogs collection used goalId
+        return codecs.encodeUsageLog(log, USAGE_LOGS_COLLECTION.equals(collection) ? "goalId" : "activityId");
+    }
+
     // Leaderboard operations
+    // Ranks on the folded users/{uid}.ecoPoints; points still sitting in shards count once folded
     public void getTopUsers(int limit, OnCompleteListener<QuerySnapshot> listener) {
         db.collection("users")
                 .orderBy("ecoPoints", Query.Direction.DESCENDING)
@@ -238,120 +1444,423 @@ public class FirebaseHelper {
                 .addOnCompleteListener(listener);
     }
 
-    // Helper method to convert DocumentSnapshot to User
-    public User documentToUser(DocumentSnapshot document) {
-        User user = new User();
-        user.setUserId(document.getString("userId"));
-        user.setName(document.getString("name"));
-        user.setEmail(document.getString("email"));
-        user.setHouseholdSize(document.getLong("householdSize") != null ? document.getLong("householdSize").intValue() : 0);
-
-        // Safely handle List conversion
-        Object appliancesObj = document.get("majorAppliances");
-        if (appliancesObj instanceof List) {
-            @SuppressWarnings("unchecked")
-            List<String> appliances = (List<String>) appliancesObj;
-            user.setMajorAppliances(appliances);
-        } else {
-            user.setMajorAppliances(new ArrayList<>());
+    /*
+     * Rankings. rankingId null ranks lifetime users/{uid}.ecoPoints and HOUSEHOLD_RANKING ranks
+     * households/{id}.ecoPoints; anything else is a UTC period bucket id such as "week-2025-W11" or
+     * "month-2025-03" (see UsagePeriods.leaderboardWeekBucketId) and ranks leaderboardPeriods/{rankingId}/users/{uid}.points.
+     * Either way the order is points descending with the document id as a stable tie-breaker,
+     * so cursors never skip or repeat.
+     */
+    private Query rankingQuery(String rankingId) {
+        return rankingCollection(rankingId)
+                .orderBy(rankingField(rankingId), Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId());
+    }
+
+    private CollectionReference rankingCollection(String rankingId) {
+        if (rankingId == null) {
+            return db.collection("users");
         }
+        if (HOUSEHOLD_RANKING.equals(rankingId)) {
+            return db.collection("households");
+        }
+        return db.collection(PERIOD_LEADERBOARDS_COLLECTION).document(rankingId).collection("users");
+    }
+
+    private String rankingField(String rankingId) {
+        return rankingId == null || HOUSEHOLD_RANKING.equals(rankingId) ? "ecoPoints" : "points";
+    }
 
-        user.setPreviousMonthWaterUsage(document.getDouble("previousMonthWaterUsage") != null ? document.getDouble("previousMonthWaterUsage") : 0.0);
-        user.setPreviousMonthElectricityUsage(document.getDouble("previousMonthElectricityUsage") != null ? document.getDouble("previousMonthElectricityUsage") : 0.0);
+    // The document that carries a user's (or for HOUSEHOLD_RANKING, a household's) score in the given ranking; may not exist for a period with no points yet
+    public void getRankingEntry(String rankingId, String userId, OnCompleteListener<DocumentSnapshot> listener) {
+        rankingCollection(rankingId).document(userId)
+                .get()
+                .addOnCompleteListener(listener);
+    }
 
-        // Handle selectedGoals list
-        Object goalsObj = document.get("selectedGoals");
-        if (goalsObj instanceof List) {
-            @SuppressWarnings("unchecked")
-            List<String> goals = (List<String>) goalsObj;
-            user.setSelectedGoals(goals);
-        } else {
-            user.setSelectedGoals(new ArrayList<>());
+    public double getRankingPoints(String rankingId, DocumentSnapshot entry) {
+        Double points = entry.exists() ? entry.getDouble(rankingField(rankingId)) : null;
+        return points != null ? points : 0.0;
+    }
+
+    /**
+     * 1-based position of a user in the ranking. Uses two count aggregations (users ahead on points,
+     * and users tied on points but ahead by id) so no user documents are downloaded.
+     */
+    public void getUserRank(String rankingId, String userId, double points, OnCompleteListener<Long> listener) {
+        Task<AggregateQuerySnapshot> ahead = rankingCollection(rankingId)
+                .whereGreaterThan(rankingField(rankingId), points)
+                .count()
+                .get(AggregateSource.SERVER);
+        Task<AggregateQuerySnapshot> tiedAhead = rankingCollection(rankingId)
+                .whereEqualTo(rankingField(rankingId), points)
+                .whereLessThan(FieldPath.documentId(), userId)
+                .count()
+                .get(AggregateSource.SERVER);
+
+        Tasks.whenAllSuccess(ahead, tiedAhead)
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    return ahead.getResult().getCount() + tiedAhead.getResult().getCount() + 1;
+                })
+                .addOnCompleteListener(listener);
+    }
+
+    public void getRankingFirstPage(String rankingId, int limit, OnCompleteListener<QuerySnapshot> listener) {
+        rankingQuery(rankingId)
+                .limit(limit)
+                .get()
+                .addOnCompleteListener(listener);
+    }
+
+    // Up to `limit` users ranked directly below (points, userId)
+    public void getRankingPageBelow(String rankingId, double points, String userId, int limit,
+                                    OnCompleteListener<QuerySnapshot> listener) {
+        rankingQuery(rankingId)
+                .startAfter(points, userId)
+                .limit(limit)
+                .get()
+                .addOnCompleteListener(listener);
+    }
+
+    // Up to `limit` users ranked directly above (points, userId), still in descending order
+    public void getRankingPageAbove(String rankingId, double points, String userId, int limit,
+                                    OnCompleteListener<QuerySnapshot> listener) {
+        rankingQuery(rankingId)
+                .endBefore(points, userId)
+                .limitToLast(limit)
+                .get()
+                .addOnCompleteListener(listener);
+    }
+
+    /**
+     * Fills in blank names on ranking rows from users/{uid}, one whereIn query per RESOLVE_NAMES_CHUNK rows.
+     * Period entries are written by stageEcoPoints without a name, and only a fold fills it in, so users who
+     * log without opening the dashboard would otherwise show as blank rows. Names already resolved in this
+     * process are reused. The listener gets the number of rows that were given a name.
+     */
+    public void resolveMissingNames(List<LeaderboardEntry> rows, OnCompleteListener<Integer> listener) {
+        List<String> missing = new ArrayList<>();
+        int filled = 0;
+        synchronized (resolvedNames) {
+            for (LeaderboardEntry row : rows) {
+                if (row.getName() != null && !row.getName().isEmpty()) continue;
+                String name = resolvedNames.get(row.getId());
+                if (name != null) {
+                    row.setName(name);
+                    filled++;
+                } else if (!missing.contains(row.getId())) {
+                    missing.add(row.getId());
+                }
+            }
         }
 
-        user.setEcoPoints(document.getLong("ecoPoints") != null ? document.getLong("ecoPoints").intValue() : 0);
-        user.setCurrentStreak(document.getLong("currentStreak") != null ? document.getLong("currentStreak").intValue() : 0);
-        user.setHasCompletedQuestionnaire(document.getBoolean("hasCompletedQuestionnaire") != null ? document.getBoolean("hasCompletedQuestionnaire") : false);
-        user.setSetupComplete(document.getBoolean("setupComplete") != null ? document.getBoolean("setupComplete") : false);
-        user.setLastLoginDate(document.getLong("lastLoginDate") != null ? document.getLong("lastLoginDate") : 0);
-        return user;
+        List<Task<QuerySnapshot>> reads = new ArrayList<>();
+        for (int start = 0; start < missing.size(); start += RESOLVE_NAMES_CHUNK) {
+            reads.add(db.collection("users")
+                    .whereIn(FieldPath.documentId(), missing.subList(start, Math.min(start + RESOLVE_NAMES_CHUNK, missing.size())))
+                    .get());
+        }
+        int cached = filled;
+        Tasks.whenAllSuccess(reads)
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    int resolved = cached;
+                    synchronized (resolvedNames) {
+                        for (Task<QuerySnapshot> read : reads) {
+                            for (QueryDocumentSnapshot document : read.getResult()) {
+                                String name = document.getString("name");
+                                if (name != null && !name.isEmpty()) {
+                                    resolvedNames.put(document.getId(), name);
+                                }
+                            }
+                        }
+                        for (LeaderboardEntry row : rows) {
+                            String name = resolvedNames.get(row.getId());
+                            if ((row.getName() == null || row.getName().isEmpty()) && name != null) {
+                                row.setName(name);
+                                resolved++;
+                            }
+                        }
+                    }
+                    return resolved;
+                })
+                .addOnCompleteListener(listener);
     }
 
-    // Helper method to convert DocumentSnapshot to Household
-    public Household documentToHousehold(DocumentSnapshot document) {
-        Household household = new Household();
-        household.setHouseholdId(document.getId());
-        household.setHouseholdSize(document.getLong("householdSize") != null ? document.getLong("householdSize").intValue() : 0);
-
-        // Handle majorAppliances list
-        Object appliancesObj = document.get("majorAppliances");
-        if (appliancesObj instanceof List) {
-            @SuppressWarnings("unchecked")
-            List<String> appliances = (List<String>) appliancesObj;
-            household.setMajorAppliances(appliances);
+    /**
+     * Leaderboard rows only need id, name and points, so only those fields are read from the snapshot
+     * instead of decoding the whole document the way documentToUser does.
+     */
+    public LeaderboardEntry documentToLeaderboardEntry(String rankingId, DocumentSnapshot document) {
+        String name;
+        if (HOUSEHOLD_RANKING.equals(rankingId)) {
+            name = document.getString("name");
+            if (name == null || name.isEmpty()) {
+                Object residents = document.get("residents");
+                name = "Household of " + (residents instanceof List ? ((List<?>) residents).size() : 0);
+            }
         } else {
-            household.setMajorAppliances(new ArrayList<>());
+            name = document.getString("name");
+        }
+        return new LeaderboardEntry(document.getId(), name, getRankingPoints(rankingId, document));
+    }
+
+    /**
+     * Materialized top-K leaderboard at leaderboards/global: {entries: [{userId, name, points}], minPoints, stale}.
+     * minPoints is the score a user off the board has to beat: the K-th score while the board is full, and
+     * kept at the old K-th score after a member drops out (stale), so a short board does not admit anyone.
+     * Folds never read the board in their transaction; see updateTopLeaderboardIfCrossed.
+     */
+
+    public DocumentReference getTopLeaderboardRef() {
+        return db.collection("leaderboards").document("global");
+    }
+
+    public void getTopLeaderboard(OnCompleteListener<DocumentSnapshot> listener) {
+        getTopLeaderboardRef()
+                .get()
+                .addOnSuccessListener(FirebaseHelper::cacheTopBoard)
+                .addOnCompleteListener(listener);
+    }
+
+    /**
+     * Follow-up to a fold, in its own transaction so concurrent folds never contend on leaderboards/global.
+     * Only a user who is on the board or beats its floor, as last seen by this process, touches it;
+     * everyone else costs at most one board read every TOP_BOARD_CACHE_MS.
+     */
+    private void updateTopLeaderboardIfCrossed(String userId, String name, long points) {
+        boolean cacheFresh;
+        synchronized (cachedTopBoardMembers) {
+            cacheFresh = System.currentTimeMillis() - cachedTopBoardAt < TOP_BOARD_CACHE_MS;
         }
+        Task<Void> boardKnown = cacheFresh
+                ? Tasks.forResult(null)
+                : getTopLeaderboardRef().get().continueWith(task -> {
+                    if (task.isSuccessful()) {
+                        cacheTopBoard(task.getResult());
+                    }
+                    return null;
+                });
+        boardKnown.addOnCompleteListener(known -> {
+            synchronized (cachedTopBoardMembers) {
+                if (!cachedTopBoardMembers.contains(userId) && points <= cachedTopBoardFloor) {
+                    return;
+                }
+            }
+            DocumentReference boardRef = getTopLeaderboardRef();
+            db.runTransaction(transaction -> {
+                DocumentSnapshot board = transaction.get(boardRef);
+                Map<String, Object> boardUpdate = updatedTopLeaderboard(board, userId, name, points);
+                if (boardUpdate != null) {
+                    transaction.set(boardRef, boardUpdate, SetOptions.merge());
+                }
+                return boardUpdate;
+            }).addOnCompleteListener(task -> {
+                if (!task.isSuccessful()) {
+                    Log.w(TAG, "Top leaderboard update for " + userId + " failed, next fold retries", task.getException());
+                } else if (task.getResult() != null) {
+                    cacheTopBoard(task.getResult());
+                }
+            });
+        });
+    }
+
+    private static void cacheTopBoard(DocumentSnapshot board) {
+        cacheTopBoard(board.exists() ? board.getData() : null);
+    }
+
+    // A missing board caches a floor of MIN_VALUE, so every fold offers its score until the board exists
+    private static void cacheTopBoard(Map<String, Object> boardMap) {
+        synchronized (cachedTopBoardMembers) {
+            cachedTopBoardMembers.clear();
+            cachedTopBoardFloor = Long.MIN_VALUE;
+            cachedTopBoardAt = System.currentTimeMillis();
+            if (boardMap == null) {
+                return;
+            }
+            Object entries = boardMap.get("entries");
+            if (entries instanceof List) {
+                for (Object entry : (List<?>) entries) {
+                    if (entry instanceof Map) {
+                        cachedTopBoardMembers.add(String.valueOf(((Map<?, ?>) entry).get("userId")));
+                    }
+                }
+            }
+            Object floor = boardMap.get("minPoints");
+            if (floor instanceof Number) {
+                cachedTopBoardFloor = ((Number) floor).longValue();
+            }
+        }
+    }
+
+    /**
+     * Recomputes leaderboards/global from the users collection when the document is missing or stale,
+     * i.e. a member dropped out and the next user in line is unknown. The write is a transaction that
+     * only replaces a missing or stale board, so calling this never overwrites a healthy one; the listener
+     * then gets the board as it is. Security rules should still restrict who may write the document.
+     */
+    public void rebuildTopLeaderboard(OnCompleteListener<List<LeaderboardEntry>> listener) {
+        db.collection("users")
+                .orderBy("ecoPoints", Query.Direction.DESCENDING)
+                .limit(LEADERBOARD_SIZE)
+                .get()
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful() || task.getResult() == null) {
+                        return Tasks.<List<LeaderboardEntry>>forException(task.getException() != null
+                                ? task.getException()
+                                : new IllegalStateException("Empty result rebuilding leaderboard"));
+                    }
+
+                    List<Map<String, Object>> entries = new ArrayList<>();
+                    for (QueryDocumentSnapshot document : task.getResult()) {
+                        LeaderboardEntry entry = documentToLeaderboardEntry(null, document);
+                        entries.add(leaderboardEntry(entry.getId(), entry.getName(), Math.round(entry.getPoints())));
+                    }
+                    Map<String, Object> boardMap = new HashMap<>();
+                    boardMap.put("entries", entries);
+                    boardMap.put("minPoints", entries.size() >= LEADERBOARD_SIZE
+                            ? entryPoints(entries.get(entries.size() - 1)) : Long.MIN_VALUE);
+                    boardMap.put("stale", false);
+                    boardMap.put("updatedAt", System.currentTimeMillis());
+
+                    DocumentReference boardRef = getTopLeaderboardRef();
+                    return db.runTransaction(transaction -> {
+                        DocumentSnapshot current = transaction.get(boardRef);
+                        if (current.exists() && !Boolean.TRUE.equals(current.getBoolean("stale"))) {
+                            cacheTopBoard(current.getData());
+                            return getLeaderboardEntries(current);
+                        }
+                        transaction.set(boardRef, boardMap);
+                        cacheTopBoard(boardMap);
+                        return entries;
+                    }).continueWith(setTask -> {
+                        if (!setTask.isSuccessful()) {
+                            throw setTask.getException();
+                        }
+                        return toLeaderboardEntries(setTask.getResult());
+                    });
+                })
+                .addOnCompleteListener(listener);
+    }
+
+    // Decodes leaderboards/global into rank-ordered rows
+    public List<LeaderboardEntry> documentToLeaderboardEntries(DocumentSnapshot board) {
+        return toLeaderboardEntries(getLeaderboardEntries(board));
+    }
 
-        household.setPreviousMonthWaterUsage(document.getDouble("previousMonthWaterUsage") != null ? document.getDouble("previousMonthWaterUsage") : 0.0);
-        household.setPreviousMonthElectricityUsage(document.getDouble("previousMonthElectricityUsage") != null ? document.getDouble("previousMonthElectricityUsage") : 0.0);
+    private List<LeaderboardEntry> toLeaderboardEntries(List<Map<String, Object>> entryMaps) {
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        for (Map<String, Object> entryMap : entryMaps) {
+            entries.add(new LeaderboardEntry((String) entryMap.get("userId"), (String) entryMap.get("name"),
+                    entryPoints(entryMap)));
+        }
+        return entries;
+    }
 
-        // Handle residents list
-        Object residentsObj = document.get("residents");
-        if (residentsObj instanceof List) {
-            @SuppressWarnings("unchecked")
-            List<String> residents = (List<String>) residentsObj;
-            household.setResidents(residents);
+    /**
+     * Applies one user's new folded total to the top-K entries. Returns the fields to merge into
+     * leaderboards/global, or null when the user neither is on the board nor beats its K-th score.
+     */
+    private Map<String, Object> updatedTopLeaderboard(DocumentSnapshot board, String userId, String name, long points) {
+        List<Map<String, Object>> entries = getLeaderboardEntries(board);
+
+        int index = -1;
+        for (int i = 0; i < entries.size(); i++) {
+            if (userId.equals(entries.get(i).get("userId"))) {
+                index = i;
+                break;
+            }
+        }
+        boolean full = entries.size() >= LEADERBOARD_SIZE;
+        Long storedFloor = board != null && board.exists() ? board.getLong("minPoints") : null;
+        // What a user off the board must beat; a short board keeps the floor it had when it was last full
+        long floor = full ? entryPoints(entries.get(entries.size() - 1))
+                : storedFloor != null ? storedFloor : Long.MIN_VALUE;
+
+        boolean stale = false;
+        if (index >= 0) {
+            if (entryPoints(entries.get(index)) == points) {
+                return null;
+            }
+            entries.remove(index);
+            if (points < floor) {
+                // Dropped below the floor: someone off the board may now outrank this user
+                stale = true;
+            } else {
+                entries.add(leaderboardEntry(userId, name, points));
+            }
+        } else if (points > floor) {
+            entries.add(leaderboardEntry(userId, name, points));
         } else {
-            household.setResidents(new ArrayList<>());
+            return null;
+        }
+
+        Collections.sort(entries, (a, b) -> Long.compare(entryPoints(b), entryPoints(a)));
+        while (entries.size() > LEADERBOARD_SIZE) {
+            entries.remove(entries.size() - 1);
+        }
+
+        Map<String, Object> boardMap = new HashMap<>();
+        boardMap.put("entries", entries);
+        boardMap.put("minPoints", entries.size() >= LEADERBOARD_SIZE ? entryPoints(entries.get(entries.size() - 1)) : floor);
+        boardMap.put("updatedAt", System.currentTimeMillis());
+        if (stale) {
+            boardMap.put("stale", true);
         }
+        return boardMap;
+    }
 
-        household.setCreatedAt(document.getLong("createdAt") != null ? document.getLong("createdAt") : 0);
-        household.setUpdatedAt(document.getLong("updatedAt") != null ? document.getLong("updatedAt") : 0);
-        household.setPastMonthWaterUsageMood(document.getString("pastMonthWaterUsageMood"));
-        household.setPastMonthElectricityUsageMood(document.getString("pastMonthElectricityUsageMood"));
+    private List<Map<String, Object>> getLeaderboardEntries(DocumentSnapshot board) {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        if (board == null || !board.exists()) {
+            return entries;
+        }
+        Object entriesObj = board.get("entries");
+        if (entriesObj instanceof List) {
+            for (Object entry : (List<?>) entriesObj) {
+                if (entry instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> entryMap = new HashMap<>((Map<String, Object>) entry);
+                    entries.add(entryMap);
+                }
+            }
+        }
+        return entries;
+    }
 
-        return household;
+    private Map<String, Object> leaderboardEntry(String userId, String name, long points) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("userId", userId);
+        entry.put("name", name != null ? name : "");
+        entry.put("points", points);
+        return entry;
+    }
+
+    private long entryPoints(Map<String, Object> entry) {
+        Object points = entry.get("points");
+        return points instanceof Number ? ((Number) points).longValue() : 0;
+    }
+
+    // DocumentSnapshot to model conversions; field handling lives in DocumentCodecs
+    public User documentToUser(DocumentSnapshot document) {
+        return DocumentCodecs.decodeUser(DocumentCodecs.dataOf(document));
+    }
+
+    public Household documentToHousehold(DocumentSnapshot document) {
+        return DocumentCodecs.decodeHousehold(document.getId(), DocumentCodecs.dataOf(document));
     }
 
-    // Helper method to convert DocumentSnapshot to Goal
     public Goal documentToGoal(DocumentSnapshot document) {
-        Goal goal = new Goal();
-        goal.setGoalId(document.getId());
-        goal.setUserId(document.getString("userId"));
-        goal.setActivityName(document.getString("activityName"));
-        goal.setTargetLimit(document.getDouble("targetLimit") != null ? document.getDouble("targetLimit") : 0.0);
-        goal.setType(document.getString("type"));
-        goal.setFrequency(document.getString("frequency"));
-        goal.setUnit(document.getString("unit"));
-        goal.setCreatedAt(document.getLong("createdAt") != null ? document.getLong("createdAt") : 0);
-        return goal;
-    }
-
-    // Helper method to convert DocumentSnapshot to UsageLog
+        return DocumentCodecs.decodeGoal(document.getId(), DocumentCodecs.dataOf(document));
+    }
+
     public UsageLog documentToUsageLog(DocumentSnapshot document) {
-        UsageLog log = new UsageLog();
-        log.setLogId(document.getId());
-        log.setUserId(document.getString("userId"));
-        log.setGoalId(document.getString("goalId"));
-        log.setActivityName(document.getString("activityName"));
-        log.setUsageAmount(document.getDouble("usageAmount") != null ? document.getDouble("usageAmount") : 0.0);
-        log.setType(document.getString("type"));
-        log.setTargetLimit(document.getDouble("targetLimit") != null ? document.getDouble("targetLimit") : 0.0);
-        // Safely handle Firestore Timestamp and Number types for the timestamp field
-        Object timestampObj = document.get("timestamp");
-        if (timestampObj instanceof com.google.firebase.Timestamp) {
-            com.google.firebase.Timestamp ts = (com.google.firebase.Timestamp) timestampObj;
-            log.setTimestamp(ts);
-        } else if (timestampObj instanceof Number) {
-            long millis = ((Number) timestampObj).longValue();
-            log.setTimestamp(new com.google.firebase.Timestamp(new java.util.Date(millis)));
-        } else {
-            log.setTimestamp(new com.google.firebase.Timestamp(new java.util.Date(0)));
-        }
-        log.setEcoPointsEarned(document.getLong("ecoPointsEarned") != null ? document.getLong("ecoPointsEarned").intValue() : 0);
-        log.setMetGoal(document.getBoolean("metGoal") != null ? document.getBoolean("metGoal") : false);
-        return log;
+        return DocumentCodecs.decodeUsageLog(document.getId(), DocumentCodecs.dataOf(document));
     }
 
     public FirebaseFirestore getFirestore() {
@@ -0,0 +1,183 @@
+package com.example.usagetracker.utils;
+
+import com.example.usagetracker.models.Goal;
+import com.example.usagetracker.models.UsageLog;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Running usage totals for each goal over its current period: today for "Daily" goals, this ISO week
+ * for "Weekly" ones. Logs are fed in as they arrive and each is counted once, by log id, into the goal
+ * it belongs to if it falls inside that goal's window; when a window rolls over the goal starts again
+ * from zero. Nothing here rescans history, so callers only need to pass the logs they have not fed yet
+ * (see getFeedFromMillis). A window that moves any other way, as when the time zone changes, drops
+ * everything like a goal change does (see resetIfWindowsShifted).
+ */
+public class GoalPeriodTracker {
+    public static final String FREQUENCY_WEEKLY = "Weekly";
+
+    private final Map<String, Goal> goals = new HashMap<>();
+    private final Map<String, Double> totals = new HashMap<>();
+    private final Map<String, TimeRange> totalWindows = new HashMap<>();
+    private final Set<String> countedLogIds = new HashSet<>();
+    private PeriodWindows windows;
+    private long newestFedMillis = 0;
+
+    /**
+     * Replaces the tracked goals. If the set of goal ids changed, all totals are dropped and
+     * getFeedFromMillis goes back to the start of the week, so the caller feeds the window again;
+     * returns whether that happened.
+     */
+    public boolean setGoals(List<Goal> newGoals) {
+        Map<String, Goal> byId = new HashMap<>();
+        for (Goal goal : newGoals) {
+            if (goal.getGoalId() != null) {
+                byId.put(goal.getGoalId(), goal);
+            }
+        }
+        boolean reset = !byId.keySet().equals(goals.keySet());
+        if (reset) {
+            clear();
+        }
+        goals.clear();
+        goals.putAll(byId);
+        return reset;
+    }
+
+    public Collection<Goal> getGoals() {
+        return goals.values();
+    }
+
+    /**
+     * Adds the logs not counted yet to their goals' totals. Logs for unknown goals or outside the
+     * goal's current window are skipped but still remembered, so feeding overlapping batches is safe.
+     */
+    public void addLogs(Collection<UsageLog> logs, Date now) {
+        boolean reset = resetIfWindowsShifted(now);
+        for (UsageLog log : logs) {
+            if (log.getTimestamp() == null) {
+                continue;
+            }
+            newestFedMillis = Math.max(newestFedMillis, log.getTimestamp().toDate().getTime());
+            if (log.getLogId() != null && !countedLogIds.add(log.getLogId())) {
+                continue;
+            }
+            Goal goal = goals.get(log.getGoalId());
+            if (goal == null) {
+                continue;
+            }
+            TimeRange window = currentWindow(goal, now);
+            if (window.contains(log.getTimestamp())) {
+                totals.put(goal.getGoalId(), getTotal(goal.getGoalId()) + log.getUsageAmount());
+            }
+        }
+        if (reset) {
+            // These logs may start after the new windows do; the next feed goes back to the start of the week
+            newestFedMillis = 0;
+        }
+    }
+
+    // goalId -> usage in the goal's current window, for ActivityProgressAdapter.setCurrentUsageMap
+    public Map<String, Double> getCurrentTotals(Date now) {
+        resetIfWindowsShifted(now);
+        Map<String, Double> current = new HashMap<>();
+        for (Goal goal : goals.values()) {
+            currentWindow(goal, now);
+            current.put(goal.getGoalId(), getTotal(goal.getGoalId()));
+        }
+        return current;
+    }
+
+    /**
+     * The oldest timestamp a caller still has to feed: the start of the widest current window before
+     * anything has been fed, afterwards the newest log seen (inclusive, duplicates are ignored).
+     */
+    public long getFeedFromMillis(Date now) {
+        resetIfWindowsShifted(now);
+        if (newestFedMillis == 0) {
+            return windowsAt(now).week.getStartMillis();
+        }
+        return newestFedMillis;
+    }
+
+    // The window a goal's total currently covers; anything but "Weekly" is treated as daily
+    public TimeRange windowFor(Goal goal, Date now) {
+        PeriodWindows current = windowsAt(now);
+        return FREQUENCY_WEEKLY.equalsIgnoreCase(goal.getFrequency()) ? current.week : current.day;
+    }
+
+    /**
+     * Drops all totals and counted log ids if any goal's window moved other than forward past the one its
+     * total covers, e.g. a time zone change shifted today's boundaries. Those totals may hold logs that
+     * are now outside the window and miss ones inside it, so like setGoals the caller feeds the window
+     * again from getFeedFromMillis; returns whether that happened.
+     */
+    public boolean resetIfWindowsShifted(Date now) {
+        for (Goal goal : goals.values()) {
+            TimeRange counted = totalWindows.get(goal.getGoalId());
+            TimeRange window = windowFor(goal, now);
+            if (counted != null && counted.getStartMillis() != window.getStartMillis()
+                    && window.getStartMillis() < counted.getEndMillis()) {
+                clear();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void clear() {
+        totals.clear();
+        totalWindows.clear();
+        countedLogIds.clear();
+        newestFedMillis = 0;
+    }
+
+    // Resets a goal's total the first time it is asked about after its window rolled forward
+    private TimeRange currentWindow(Goal goal, Date now) {
+        TimeRange window = windowFor(goal, now);
+        TimeRange counted = totalWindows.put(goal.getGoalId(), window);
+        if (counted != null && counted.getStartMillis() != window.getStartMillis()) {
+            totals.remove(goal.getGoalId());
+        }
+        return window;
+    }
+
+    private double getTotal(String goalId) {
+        Double total = totals.get(goalId);
+        return total != null ? total : 0.0;
+    }
+
+    // Boundaries are computed once per local day and again if the device time zone changes
+    private PeriodWindows windowsAt(Date now) {
+        String timeZoneId = TimeZone.getDefault().getID();
+        if (windows == null || !windows.covers(now, timeZoneId)) {
+            windows = new PeriodWindows(now, timeZoneId);
+        }
+        return windows;
+    }
+
+    private static class PeriodWindows {
+        final String timeZoneId;
+        final TimeRange day;
+        final TimeRange week;
+
+        PeriodWindows(Date now, String timeZoneId) {
+            this.timeZoneId = timeZoneId;
+            this.day = TimeRange.dayOf(now);
+            this.week = TimeRange.weekOf(now);
+        }
+
+        boolean covers(Date now, String currentTimeZoneId) {
+            long millis = now.getTime();
+            return timeZoneId.equals(currentTimeZoneId)
+                    && millis >= day.getStartMillis() && millis < day.getEndMillis();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.usagetracker.utils;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares one Firestore snapshot listener per document or query between every screen that subscribes to it.
+ * Subscribers are reference counted: the Firestore listener is attached for the first subscriber and removed
+ * with the last one. Each subscription is tied to a LifecycleOwner and is dropped on ON_STOP, so screens
+ * subscribe again from onStart. Call from the main thread only.
+ */
+public class ListenerRegistry {
+    private static final String TAG = "ListenerRegistry";
+
+    private static ListenerRegistry instance;
+
+    // Keyed by DocumentReference or Query, both of which compare by path and query shape
+    private final Map<Object, SharedListener<?>> listeners = new HashMap<>();
+
+    public static synchronized ListenerRegistry getInstance() {
+        if (instance == null) {
+            instance = new ListenerRegistry();
+        }
+        return instance;
+    }
+
+    private ListenerRegistry() {
+    }
+
+    public ListenerRegistration listen(LifecycleOwner owner, DocumentReference ref, EventListener<DocumentSnapshot> listener) {
+        return subscribe(owner, ref, listener, ref::addSnapshotListener);
+    }
+
+    public ListenerRegistration listen(LifecycleOwner owner, Query query, EventListener<QuerySnapshot> listener) {
+        return subscribe(owner, query, listener, query::addSnapshotListener);
+    }
+
+    // Diagnostics
+    public int getActiveListenerCount() {
+        return listeners.size();
+    }
+
+    public int getSubscriberCount() {
+        int count = 0;
+        for (SharedListener<?> shared : listeners.values()) {
+            count += shared.subscribers.size();
+        }
+        return count;
+    }
+
+    private <T> ListenerRegistration subscribe(LifecycleOwner owner, Object key, EventListener<T> listener,
+                                               Attacher<T> attacher) {
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return () -> { };
+        }
+
+        @SuppressWarnings("unchecked")
+        SharedListener<T> shared = (SharedListener<T>) listeners.get(key);
+        if (shared == null) {
+            shared = new SharedListener<>();
+            listeners.put(key, shared);
+            shared.registration = attacher.attach(shared);
+            Log.d(TAG, "Attached " + key + " (" + listeners.size() + " active)");
+        } else if (shared.lastValue != null) {
+            // Late subscribers get the current state straight away instead of waiting for the next change
+            listener.onEvent(shared.lastValue, null);
+        }
+        shared.subscribers.add(listener);
+
+        Subscription<T> subscription = new Subscription<>(owner, key, shared, listener);
+        owner.getLifecycle().addObserver(subscription);
+        return subscription;
+    }
+
+    private <T> void release(Object key, SharedListener<T> shared, EventListener<T> listener) {
+        shared.subscribers.remove(listener);
+        if (shared.subscribers.isEmpty() && listeners.get(key) == shared) {
+            listeners.remove(key);
+            shared.registration.remove();
+            Log.d(TAG, "Detached " + key + " (" + listeners.size() + " active)");
+        }
+    }
+
+    private interface Attacher<T> {
+        ListenerRegistration attach(EventListener<T> listener);
+    }
+
+    private static class SharedListener<T> implements EventListener<T> {
+        final List<EventListener<T>> subscribers = new ArrayList<>();
+        ListenerRegistration registration;
+        T lastValue;
+
+        @Override
+        public void onEvent(T value, FirebaseFirestoreException error) {
+            if (error == null) {
+                lastValue = value;
+            }
+            // Copy so a subscriber can unsubscribe from inside its callback
+            for (EventListener<T> subscriber : new ArrayList<>(subscribers)) {
+                subscriber.onEvent(value, error);
+            }
+        }
+    }
+
+    private class Subscription<T> implements ListenerRegistration, LifecycleEventObserver {
+        private final LifecycleOwner owner;
+        private final Object key;
+        private final SharedListener<T> shared;
+        private final EventListener<T> listener;
+        private boolean removed = false;
+
+        Subscription(LifecycleOwner owner, Object key, SharedListener<T> shared, EventListener<T> listener) {
+            this.owner = owner;
+            this.key = key;
+            this.shared = shared;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_STOP || event == Lifecycle.Event.ON_DESTROY) {
+                remove();
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (removed) return;
+            removed = true;
+            owner.getLifecycle().removeObserver(this);
+            release(key, shared, listener);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.usagetracker.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.usagetracker.models.UsageLog;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * On-device mirror of the Firestore log collections.
+ * Screens read from here first; FirebaseHelper.syncUsageLogs keeps it up to date.
+ * Rows with pending = 1 double as the outbound queue: enqueueLog records a log together with the
+ * points it earns, and FirebaseHelper.flushPendingLogs applies both exactly once.
+ */
+public class LocalLogStore extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "usage_logs.db";
+    private static final int DATABASE_VERSION = 3;
+
+    private static final String TABLE_LOGS = "usage_logs";
+    private static final String TABLE_SYNC_STATE = "sync_state";
+
+    private static final Executor DISK = Executors.newSingleThreadExecutor();
+
+    private static LocalLogStore instance;
+
+    public static synchronized LocalLogStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalLogStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LocalLogStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_LOGS + " ("
+                + "collection TEXT NOT NULL, "
+                + "log_id TEXT NOT NULL, "
+                + "user_id TEXT NOT NULL, "
+                + "goal_id TEXT, "
+                + "activity_name TEXT, "
+                + "usage_amount REAL, "
+                + "target_limit REAL, "
+                + "type TEXT, "
+                + "timestamp INTEGER NOT NULL, "
+                + "eco_points_earned INTEGER, "
+                + "met_goal INTEGER, "
+                + "pending INTEGER NOT NULL DEFAULT 0, "
+                + "queued_points REAL, "
+                + "PRIMARY KEY (collection, log_id))");
+        db.execSQL("CREATE INDEX idx_logs_user_time ON " + TABLE_LOGS
+                + " (user_id, collection, timestamp DESC)");
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + " ("
+                + "user_id TEXT NOT NULL, "
+                + "collection TEXT NOT NULL, "
+                + "high_water_mark INTEGER NOT NULL DEFAULT 0, "
+                + "history_complete INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (user_id, collection))");
+    }
+
+    // Migrates in place one version at a time: pending rows have not reached Firestore yet and must survive
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE " + TABLE_SYNC_STATE + " ADD COLUMN history_complete INTEGER NOT NULL DEFAULT 0");
+        }
+        if (oldVersion < 3) {
+            db.execSQL("ALTER TABLE " + TABLE_LOGS + " ADD COLUMN queued_points REAL");
+        }
+    }
+
+    /**
+     * Runs store work on the store's own thread and delivers the result on the main thread, like a
+     * Firestore Task. One thread keeps writes in the order they were issued.
+     */
+    public <T> Task<T> onDisk(Callable<T> work) {
+        return Tasks.call(DISK, work);
+    }
+
+    // Reads
+    public List<UsageLog> getLogs(String userId, String collection) {
+        return queryLogs("user_id = ? AND collection = ?",
+                new String[]{userId, collection}, null);
+    }
+
+    public List<UsageLog> getLogsInRange(String userId, String collection, long startMillis, long endMillis) {
+        return queryLogs("user_id = ? AND collection = ? AND timestamp >= ? AND timestamp < ?",
+                new String[]{userId, collection, String.valueOf(startMillis), String.valueOf(endMillis)}, null);
+    }
+
+    /**
+     * Keyset page: the newest `limit` logs ordered after (beforeMillis, beforeLogId) in (timestamp, log_id)
+     * descending order, so logs sharing a millisecond across a page boundary are not skipped.
+     * A null beforeLogId starts strictly before beforeMillis.
+     */
+    public List<UsageLog> getLogsPage(String userId, String collection, long beforeMillis, String beforeLogId, int limit) {
+        if (beforeLogId == null) {
+            return queryLogs("user_id = ? AND collection = ? AND timestamp < ?",
+                    new String[]{userId, collection, String.valueOf(beforeMillis)}, String.valueOf(limit));
+        }
+        return queryLogs("user_id = ? AND collection = ? AND (timestamp < ? OR (timestamp = ? AND log_id < ?))",
+                new String[]{userId, collection, String.valueOf(beforeMillis), String.valueOf(beforeMillis), beforeLogId},
+                String.valueOf(limit));
+    }
+
+    public List<UsageLog> getPendingLogs(String userId, String collection) {
+        return queryLogs("user_id = ? AND collection = ? AND pending = 1",
+                new String[]{userId, collection}, null);
+    }
+
+    // Points still to be applied for each queued log id; logs pending without points are left out
+    public Map<String, Double> getQueuedPoints(String userId, String collection) {
+        Map<String, Double> points = new HashMap<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_LOGS, new String[]{"log_id", "queued_points"},
+                "user_id = ? AND collection = ? AND pending = 1 AND queued_points IS NOT NULL",
+                new String[]{userId, collection}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                points.put(cursor.getString(0), cursor.getDouble(1));
+            }
+        }
+        return points;
+    }
+
+    private List<UsageLog> queryLogs(String selection, String[] args, String limit) {
+        List<UsageLog> logs = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_LOGS, null, selection, args,
+                null, null, "timestamp DESC, log_id DESC", limit)) {
+            int idCol = cursor.getColumnIndexOrThrow("log_id");
+            int userCol = cursor.getColumnIndexOrThrow("user_id");
+            int goalCol = cursor.getColumnIndexOrThrow("goal_id");
+            int nameCol = cursor.getColumnIndexOrThrow("activity_name");
+            int amountCol = cursor.getColumnIndexOrThrow("usage_amount");
+            int targetCol = cursor.getColumnIndexOrThrow("target_limit");
+            int typeCol = cursor.getColumnIndexOrThrow("type");
+            int timeCol = cursor.getColumnIndexOrThrow("timestamp");
+            int pointsCol = cursor.getColumnIndexOrThrow("eco_points_earned");
+            int metCol = cursor.getColumnIndexOrThrow("met_goal");
+            while (cursor.moveToNext()) {
+                UsageLog log = new UsageLog();
+                log.setLogId(cursor.getString(idCol));
+                log.setUserId(cursor.getString(userCol));
+                log.setGoalId(cursor.getString(goalCol));
+                log.setActivityName(cursor.getString(nameCol));
+                log.setUsageAmount(cursor.getDouble(amountCol));
+                log.setTargetLimit(cursor.getDouble(targetCol));
+                log.setType(cursor.getString(typeCol));
+                log.setTimestamp(new Timestamp(new Date(cursor.getLong(timeCol))));
+                log.setEcoPointsEarned(cursor.getInt(pointsCol));
+                log.setMetGoal(cursor.getInt(metCol) != 0);
+                logs.add(log);
+            }
+        }
+        return logs;
+    }
+
+    // Writes
+    public void putLog(String collection, UsageLog log, boolean pending) {
+        ContentValues values = toContentValues(collection, log, pending);
+        getWritableDatabase().insertWithOnConflict(TABLE_LOGS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Queues a new log and the eco-points it earns. The log id is the idempotency key: it becomes the
+     * Firestore document id, so a flush that is retried after a crash or a lost ack applies it only once.
+     */
+    public void enqueueLog(String collection, UsageLog log, double points) {
+        ContentValues values = toContentValues(collection, log, true);
+        values.put("queued_points", points);
+        getWritableDatabase().insertWithOnConflict(TABLE_LOGS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Upserts logs pulled from Firestore. Rows that still have a local pending write are left alone
+     * so an in-flight edit is never overwritten by an older server copy.
+     */
+    public void putSyncedLogs(String collection, List<UsageLog> logs) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (UsageLog log : logs) {
+                ContentValues values = toContentValues(collection, log, false);
+                int updated = db.update(TABLE_LOGS, values,
+                        "collection = ? AND log_id = ? AND pending = 0",
+                        new String[]{collection, log.getLogId()});
+                if (updated == 0) {
+                    db.insertWithOnConflict(TABLE_LOGS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void markSynced(String collection, String logId) {
+        ContentValues values = new ContentValues();
+        values.put("pending", 0);
+        values.putNull("queued_points");
+        getWritableDatabase().update(TABLE_LOGS, values, "collection = ? AND log_id = ?",
+                new String[]{collection, logId});
+    }
+
+    // Sync state
+    public long getHighWaterMark(String userId, String collection) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SYNC_STATE, new String[]{"high_water_mark"},
+                "user_id = ? AND collection = ?", new String[]{userId, collection}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    public void setHighWaterMark(String userId, String collection, long highWaterMark) {
+        ContentValues values = new ContentValues();
+        values.put("high_water_mark", highWaterMark);
+        updateSyncState(userId, collection, values);
+    }
+
+    // True once every log older than the local copy has been pulled, so paging can stop asking Firestore
+    public boolean isHistoryComplete(String userId, String collection) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SYNC_STATE, new String[]{"history_complete"},
+                "user_id = ? AND collection = ?", new String[]{userId, collection}, null, null, null)) {
+            return cursor.moveToFirst() && cursor.getInt(0) != 0;
+        }
+    }
+
+    public void setHistoryComplete(String userId, String collection, boolean complete) {
+        ContentValues values = new ContentValues();
+        values.put("history_complete", complete ? 1 : 0);
+        updateSyncState(userId, collection, values);
+    }
+
+    private void updateSyncState(String userId, String collection, ContentValues values) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues key = new ContentValues();
+        key.put("user_id", userId);
+        key.put("collection", collection);
+        db.insertWithOnConflict(TABLE_SYNC_STATE, null, key, SQLiteDatabase.CONFLICT_IGNORE);
+        db.update(TABLE_SYNC_STATE, values, "user_id = ? AND collection = ?", new String[]{userId, collection});
+    }
+
+    private ContentValues toContentValues(String collection, UsageLog log, boolean pending) {
+        ContentValues values = new ContentValues();
+        values.put("collection", collection);
+        values.put("log_id", log.getLogId());
+        values.put("user_id", log.getUserId());
+        values.put("goal_id", log.getGoalId());
+        values.put("activity_name", log.getActivityName());
+        values.put("usage_amount", log.getUsageAmount());
+        values.put("target_limit", log.getTargetLimit());
+        values.put("type", log.getType());
+        values.put("timestamp", log.getTimestamp() != null ? log.getTimestamp().toDate().getTime() : 0);
+        values.put("eco_points_earned", log.getEcoPointsEarned());
+        values.put("met_goal", log.isMetGoal() ? 1 : 0);
+        values.put("pending", pending ? 1 : 0);
+        return values;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.usagetracker.utils;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies one user's legacy usageLogs documents into the logs collection, renaming goalId to activityId.
+ * The legacy collection is streamed in document-id order, one page per batch, and each batch also writes
+ * the checkpoint at users/{uid}/migrations/logsUnification, so an interrupted run resumes after the last
+ * committed page. Documents keep their ids, so re-copying a page is harmless.
+ * Rollups are not touched. Legacy logs written before rollups existed are in no rollup, while later ones
+ * were counted when saved, and nothing on the document says which is which, so staging increments here
+ * would count some logs twice. Instead every rollup reader (WeekStatsActivity, CheckInActivity) compares
+ * the rollup's logCount with a count aggregate over the same period and falls back to aggregates on a mismatch.
+ */
+public class LogMigrationJob {
+    private static final String TAG = "LogMigrationJob";
+    public static final String JOB_ID = "logsUnification";
+    // One slot of the batch is the checkpoint write
+    private static final int DEFAULT_PAGE_SIZE = 400;
+
+    private final FirebaseFirestore db;
+    private final String userId;
+    private final int pageSize;
+
+    public LogMigrationJob(FirebaseFirestore db, String userId) {
+        this(db, userId, DEFAULT_PAGE_SIZE);
+    }
+
+    // Smaller pages let tests exercise resuming without seeding hundreds of documents
+    LogMigrationJob(FirebaseFirestore db, String userId, int pageSize) {
+        this.db = db;
+        this.userId = userId;
+        this.pageSize = pageSize;
+    }
+
+    public DocumentReference getCheckpointRef() {
+        return db.collection("users").document(userId).collection("migrations").document(JOB_ID);
+    }
+
+    // The listener receives the number of logs copied by this run; 0 if the migration had already finished
+    public void run(OnCompleteListener<Integer> listener) {
+        runPages(Integer.MAX_VALUE).addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Log migration for " + userId + " stopped, will resume from the checkpoint", task.getException());
+            }
+            listener.onComplete(task);
+        });
+    }
+
+    // Stops after maxPages pages even if more remain, as a crash would
+    Task<Integer> runPages(int maxPages) {
+        return getCheckpointRef().get().continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                return Tasks.forException(task.getException());
+            }
+            DocumentSnapshot checkpoint = task.getResult();
+            if (Boolean.TRUE.equals(checkpoint.getBoolean("done"))) {
+                return Tasks.forResult(0);
+            }
+            return migratePage(checkpoint.getString("lastDocId"), 0, maxPages);
+        });
+    }
+
+    private Task<Integer> migratePage(String lastDocId, int migrated, int pagesLeft) {
+        if (pagesLeft == 0) {
+            return Tasks.forResult(migrated);
+        }
+
+        Query query = db.collection(FirebaseHelper.USAGE_LOGS_COLLECTION)
+                .whereEqualTo("userId", userId)
+                .orderBy(FieldPath.documentId())
+                .limit(pageSize);
+        if (lastDocId != null) {
+            query = query.startAfter(lastDocId);
+        }
+
+        return query.get().continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                return Tasks.forException(task.getException());
+            }
+            List<DocumentSnapshot> page = task.getResult().getDocuments();
+            boolean done = page.size() < pageSize;
+
+            WriteBatch batch = db.batch();
+            for (DocumentSnapshot legacy : page) {
+                batch.set(db.collection(FirebaseHelper.LOGS_COLLECTION).document(legacy.getId()), toLogData(legacy));
+            }
+            String newLastDocId = page.isEmpty() ? lastDocId : page.get(page.size() - 1).getId();
+            Map<String, Object> checkpointMap = new HashMap<>();
+            checkpointMap.put("lastDocId", newLastDocId);
+            checkpointMap.put("migrated", FieldValue.increment(page.size()));
+            checkpointMap.put("done", done);
+            checkpointMap.put("updatedAt", FieldValue.serverTimestamp());
+            batch.set(getCheckpointRef(), checkpointMap, SetOptions.merge());
+
+            int total = migrated + page.size();
+            return batch.commit().continueWithTask(commitTask -> {
+                if (!commitTask.isSuccessful()) {
+                    return Tasks.forException(commitTask.getException());
+                }
+                Log.d(TAG, "Migrated " + total + " logs for " + userId + (done ? ", done" : ""));
+                return done ? Tasks.forResult(total) : migratePage(newLastDocId, total, pagesLeft - 1);
+            });
+        });
+    }
+
+    // The legacy document's fields as they are, with goalId renamed to activityId
+    static Map<String, Object> toLogData(DocumentSnapshot legacy) {
+        Map<String, Object> data = new HashMap<>(DocumentCodecs.dataOf(legacy));
+        Object goalId = data.remove("goalId");
+        if (goalId != null && !data.containsKey("activityId")) {
+            data.put("activityId", goalId);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.usagetracker.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.usagetracker.models.Household;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the user has entered so far in Questionnaire -> GoalSelection -> ActivitySetup.
+ * Screens stage their answers here and move on without touching the network; ActivitySetupActivity
+ * commits everything at the end through FirebaseHelper.commitOnboarding. Kept in EcoLogPrefs so the
+ * answers survive the process being killed mid-flow.
+ */
+public class OnboardingDraft {
+    private static final String TAG = "OnboardingDraft";
+    private static final String PREFS_NAME = "EcoLogPrefs";
+    private static final String KEY_DRAFT = "onboardingDraft";
+
+    private final SharedPreferences prefs;
+
+    public OnboardingDraft(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public void setHousehold(String userId, Household household) {
+        JSONObject draft = read(userId);
+        try {
+            JSONObject householdJson = new JSONObject();
+            householdJson.put("householdSize", household.getHouseholdSize());
+            householdJson.put("majorAppliances", new JSONArray(household.getMajorAppliances()));
+            householdJson.put("previousMonthWaterUsage", household.getPreviousMonthWaterUsage());
+            householdJson.put("previousMonthElectricityUsage", household.getPreviousMonthElectricityUsage());
+            householdJson.put("pastMonthWaterUsageMood", household.getPastMonthWaterUsageMood());
+            householdJson.put("pastMonthElectricityUsageMood", household.getPastMonthElectricityUsageMood());
+            householdJson.put("createdAt", household.getCreatedAt());
+            draft.put("household", householdJson);
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not stage household", e);
+        }
+        write(draft);
+    }
+
+    // Null if the questionnaire has not been completed for this user
+    public Household getHousehold(String userId) {
+        JSONObject householdJson = read(userId).optJSONObject("household");
+        if (householdJson == null) {
+            return null;
+        }
+        Household household = new Household(null, householdJson.optInt("householdSize"));
+        household.setMajorAppliances(toList(householdJson.optJSONArray("majorAppliances")));
+        household.setPreviousMonthWaterUsage(householdJson.optDouble("previousMonthWaterUsage", 0.0));
+        household.setPreviousMonthElectricityUsage(householdJson.optDouble("previousMonthElectricityUsage", 0.0));
+        household.setCurrentMonthWaterUsage(0.0);
+        household.setCurrentMonthElectricityUsage(0.0);
+        household.setPastMonthWaterUsageMood(householdJson.optString("pastMonthWaterUsageMood", "Bad"));
+        household.setPastMonthElectricityUsageMood(householdJson.optString("pastMonthElectricityUsageMood", "Bad"));
+        household.setCreatedAt(householdJson.optLong("createdAt", System.currentTimeMillis()));
+        household.setUpdatedAt(System.currentTimeMillis());
+        household.addResident(userId);
+        return household;
+    }
+
+    public void setSelectedGoals(String userId, List<String> selectedGoals) {
+        JSONObject draft = read(userId);
+        try {
+            draft.put("selectedGoals", new JSONArray(selectedGoals));
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not stage selected goals", e);
+        }
+        write(draft);
+    }
+
+    public List<String> getSelectedGoals(String userId) {
+        return toList(read(userId).optJSONArray("selectedGoals"));
+    }
+
+    // Call once the onboarding commit succeeds
+    public void clear() {
+        prefs.edit().remove(KEY_DRAFT).apply();
+    }
+
+    // A draft left by a different account is ignored and replaced
+    private JSONObject read(String userId) {
+        String stored = prefs.getString(KEY_DRAFT, null);
+        if (stored != null) {
+            try {
+                JSONObject draft = new JSONObject(stored);
+                if (userId.equals(draft.optString("userId"))) {
+                    return draft;
+                }
+            } catch (JSONException e) {
+                Log.w(TAG, "Discarding unreadable onboarding draft", e);
+            }
+        }
+        JSONObject draft = new JSONObject();
+        try {
+            draft.put("userId", userId);
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not start onboarding draft", e);
+        }
+        return draft;
+    }
+
+    private void write(JSONObject draft) {
+        prefs.edit().putString(KEY_DRAFT, draft.toString()).apply();
+    }
+
+    private static List<String> toList(JSONArray array) {
+        List<String> list = new ArrayList<>();
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                list.add(array.optString(i));
+            }
+        }
+        return list;
+    }
+}
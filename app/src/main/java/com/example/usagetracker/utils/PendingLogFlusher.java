@@ -0,0 +1,55 @@
+package com.example.usagetracker.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+/**
+ * Flushes the signed-in user's queued logs (LocalLogStore.enqueueLog) whenever a network becomes
+ * available, so logs saved offline reach Firestore without the user reopening a screen.
+ */
+public class PendingLogFlusher extends ConnectivityManager.NetworkCallback {
+    private static final String TAG = "PendingLogFlusher";
+
+    private static PendingLogFlusher instance;
+
+    private final LocalLogStore store;
+    private final FirebaseHelper firebaseHelper = new FirebaseHelper();
+
+    // Registers the process-wide network callback once; later calls are no-ops
+    public static synchronized void start(Context context) {
+        if (instance != null) {
+            return;
+        }
+        instance = new PendingLogFlusher(context.getApplicationContext());
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            // Fires straight away if a network is already up, which also drains anything left from a previous run
+            connectivityManager.registerDefaultNetworkCallback(instance);
+        }
+    }
+
+    private PendingLogFlusher(Context context) {
+        store = LocalLogStore.getInstance(context);
+    }
+
+    @Override
+    public void onAvailable(@NonNull Network network) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            return;
+        }
+        firebaseHelper.flushPendingLogs(store, user.getUid(), task -> {
+            if (!task.isSuccessful()) {
+                Log.w(TAG, "Flushing queued logs failed, will retry on the next connection", task.getException());
+            }
+        });
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.usagetracker.utils;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Keeps users/{uid}.currentStreak up to date one log at a time, without reading log history.
+ * A day counts once a log that met its goal lands on it; days are local calendar days (see epochDay).
+ * Besides the streak the user document holds the day of the last met log, streakLastMetDay, and the
+ * run that a gap last cut off (streakPrevRunEnd, streakPrevRunLength), so a backfilled log that fills
+ * that one-day gap joins both runs again, and the last day a streak bonus was paid (streakLastBonusDay).
+ * FirebaseHelper advances it inside the transaction that flushes queued logs, so it always starts from
+ * the stored state.
+ */
+public class StreakEngine {
+    public static final String FIELD_LAST_MET_DAY = "streakLastMetDay";
+    public static final String FIELD_PREV_RUN_END = "streakPrevRunEnd";
+    public static final String FIELD_PREV_RUN_LENGTH = "streakPrevRunLength";
+    public static final String FIELD_LAST_BONUS_DAY = "streakLastBonusDay";
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final long NO_DAY = -1;
+
+    public static class State {
+        public int streak;
+        public long lastMetDay = NO_DAY;
+        public long prevRunEnd = NO_DAY;
+        public int prevRunLength;
+        public long lastBonusDay = NO_DAY;
+
+        // Reads the markers from a users/{uid} document; a user who never met a goal has none
+        public static State from(DocumentSnapshot userDoc) {
+            Map<String, Object> data = DocumentCodecs.dataOf(userDoc);
+            State state = new State();
+            state.streak = DocumentCodecs.asInt(data.get("currentStreak"));
+            state.lastMetDay = data.containsKey(FIELD_LAST_MET_DAY) ? DocumentCodecs.asLong(data.get(FIELD_LAST_MET_DAY)) : NO_DAY;
+            state.prevRunEnd = data.containsKey(FIELD_PREV_RUN_END) ? DocumentCodecs.asLong(data.get(FIELD_PREV_RUN_END)) : NO_DAY;
+            state.prevRunLength = DocumentCodecs.asInt(data.get(FIELD_PREV_RUN_LENGTH));
+            state.lastBonusDay = data.containsKey(FIELD_LAST_BONUS_DAY) ? DocumentCodecs.asLong(data.get(FIELD_LAST_BONUS_DAY)) : NO_DAY;
+            if (state.lastMetDay == NO_DAY) {
+                // Streaks written before the engine existed have no marker to extend, start over
+                state.streak = 0;
+            }
+            return state;
+        }
+
+        // The streak as of now: 0 once a whole local day has passed without a met log
+        public int currentStreak(Date now) {
+            return lastMetDay != NO_DAY && epochDay(now) - lastMetDay <= 1 ? streak : 0;
+        }
+
+        // The fields to write back to users/{uid}
+        public Map<String, Object> toFields() {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("currentStreak", streak);
+            fields.put(FIELD_LAST_MET_DAY, lastMetDay);
+            fields.put(FIELD_PREV_RUN_END, prevRunEnd);
+            fields.put(FIELD_PREV_RUN_LENGTH, prevRunLength);
+            fields.put(FIELD_LAST_BONUS_DAY, lastBonusDay);
+            return fields;
+        }
+    }
+
+    /**
+     * Applies one log to the state and returns true if it earns the streak bonus: it added a day to the
+     * current streak, and that day is later than the last one a bonus was paid for. A missed log on the
+     * latest day or later resets the streak (GamificationHelper.updateStreak); missed logs backfilled onto
+     * earlier days leave it alone. A met log after such a reset starts the streak again but pays no second
+     * bonus on the same day.
+     */
+    public static boolean apply(State state, Date logTime, boolean metGoal) {
+        long day = epochDay(logTime);
+        if (advance(state, day, metGoal) && day > state.lastBonusDay) {
+            state.lastBonusDay = day;
+            return true;
+        }
+        return false;
+    }
+
+    // Returns true if the log added a day to the current streak
+    private static boolean advance(State state, long day, boolean metGoal) {
+        if (!metGoal) {
+            if (state.lastMetDay == NO_DAY || day >= state.lastMetDay) {
+                state.streak = GamificationHelper.updateStreak(state.streak, false);
+                state.lastMetDay = NO_DAY;
+                state.prevRunEnd = NO_DAY;
+                state.prevRunLength = 0;
+            }
+            return false;
+        }
+
+        if (state.lastMetDay == NO_DAY || state.streak == 0) {
+            state.streak = 1;
+            state.lastMetDay = day;
+            return true;
+        }
+
+        long runStart = state.lastMetDay - state.streak + 1;
+        if (day > state.lastMetDay + 1) {
+            // A gap: the old run is kept in case a backfilled log later fills a one-day gap
+            state.prevRunEnd = state.lastMetDay;
+            state.prevRunLength = state.streak;
+            state.streak = 1;
+            state.lastMetDay = day;
+            return true;
+        }
+        if (day == state.lastMetDay + 1) {
+            state.streak = GamificationHelper.updateStreak(state.streak, true);
+            state.lastMetDay = day;
+            return true;
+        }
+        if (day >= runStart) {
+            // Another log on a day the run already counts
+            return false;
+        }
+        if (day == runStart - 1) {
+            // Backfilled onto the day before the run: extend it, and join the previous run if this closed the gap
+            state.streak++;
+            if (state.prevRunEnd == day - 1) {
+                state.streak += state.prevRunLength;
+                state.prevRunEnd = NO_DAY;
+                state.prevRunLength = 0;
+            }
+            return true;
+        }
+        // Older than the run and not adjacent to it, it cannot reach today
+        return false;
+    }
+
+    /**
+     * Index of the local calendar day containing date: days since 1970-01-01 in the device time zone,
+     * so midnight is the user's midnight and DST days still count as one day each.
+     */
+    public static long epochDay(Date date) {
+        long millis = date.getTime();
+        return Math.floorDiv(millis + TimeZone.getDefault().getOffset(millis), DAY_MS);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.usagetracker.utils;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Query;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * A half-open window [start, end) of Firestore Timestamps for querying log timestamps.
+ * Logs store `timestamp` as a Timestamp, so bounds must be Timestamps too: a range on raw millis
+ * compares across types and never matches.
+ */
+public final class TimeRange {
+    private final Timestamp start;
+    private final Timestamp end;
+
+    public TimeRange(Timestamp start, Timestamp end) {
+        if (end.compareTo(start) < 0) {
+            throw new IllegalArgumentException("Range ends before it starts: " + start + " > " + end);
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    public static TimeRange of(Date start, Date end) {
+        return new TimeRange(new Timestamp(start), new Timestamp(end));
+    }
+
+    // The device-local calendar day, ISO week and month containing date, as in UsagePeriods
+    public static TimeRange dayOf(Date date) {
+        return following(UsagePeriods.dayStart(date), Calendar.DAY_OF_MONTH);
+    }
+
+    public static TimeRange weekOf(Date date) {
+        return following(UsagePeriods.weekStart(date), Calendar.WEEK_OF_YEAR);
+    }
+
+    public static TimeRange monthOf(Date date) {
+        return following(UsagePeriods.monthStart(date), Calendar.MONTH);
+    }
+
+    private static TimeRange following(Date start, int calendarField) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(start);
+        calendar.add(calendarField, 1);
+        return of(start, calendar.getTime());
+    }
+
+    public Timestamp getStart() {
+        return start;
+    }
+
+    public Timestamp getEnd() {
+        return end;
+    }
+
+    public long getStartMillis() {
+        return start.toDate().getTime();
+    }
+
+    public long getEndMillis() {
+        return end.toDate().getTime();
+    }
+
+    public boolean contains(Timestamp timestamp) {
+        return timestamp != null && timestamp.compareTo(start) >= 0 && timestamp.compareTo(end) < 0;
+    }
+
+    /**
+     * Adds the range clauses on field. Put equality filters before this and order by the same field
+     * after it, so the query is served by one (equality..., field) composite index.
+     */
+    public Query applyTo(Query query, String field) {
+        return query.whereGreaterThanOrEqualTo(field, start)
+                .whereLessThan(field, end);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start.toDate() + ", " + end.toDate() + ")";
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.usagetracker.utils;
+
+import android.util.Log;
+
+import com.example.usagetracker.models.UsageLog;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads a user's logs into a list one page at a time, newest first.
+ * Pages come from LocalLogStore; once the local copy runs out, older pages are pulled from Firestore
+ * with a startAfter cursor and stored locally, so history is only downloaded as far as the user scrolls.
+ * Store reads and writes run on LocalLogStore.onDisk; the list and listener are only touched on the main thread.
+ */
+public class UsageLogPager {
+    private static final String TAG = "UsageLogPager";
+
+    public interface Listener {
+        void onLogsReset();
+
+        void onLogsAppended(int positionStart, int count);
+
+        void onPageFailed(Exception e);
+    }
+
+    private final LocalLogStore store;
+    private final FirebaseHelper firebaseHelper;
+    private final String userId;
+    private final String collection;
+    private final int pageSize;
+    private final List<UsageLog> logs;
+    private final Listener listener;
+
+    private DocumentSnapshot remoteCursor;
+    private boolean loading = false;
+    private boolean endReached = false;
+    // Bumped by refresh, so a page read before it is not appended to the re-read list
+    private int generation = 0;
+
+    public UsageLogPager(LocalLogStore store, FirebaseHelper firebaseHelper, String userId, String collection,
+                         int pageSize, List<UsageLog> logs, Listener listener) {
+        this.store = store;
+        this.firebaseHelper = firebaseHelper;
+        this.userId = userId;
+        this.collection = collection;
+        this.pageSize = pageSize;
+        this.logs = logs;
+        this.listener = listener;
+    }
+
+    /**
+     * Re-reads the pages already shown from the local store, e.g. after a sync added newer logs.
+     */
+    public void refresh() {
+        int count = Math.max(logs.size(), pageSize);
+        int refreshed = ++generation;
+        loading = false;
+        readPage(Long.MAX_VALUE, null, count).addOnSuccessListener(page -> {
+            if (refreshed != generation) return;
+            logs.clear();
+            logs.addAll(page.logs);
+            endReached = page.logs.size() < count && page.historyComplete;
+            listener.onLogsReset();
+        });
+    }
+
+    public void loadNextPage() {
+        if (loading || endReached) return;
+
+        loading = true;
+        int requested = generation;
+        readPage(oldestLoadedMillis(), oldestLoadedLogId(), pageSize).addOnCompleteListener(task -> {
+            if (requested != generation) return;
+            if (!task.isSuccessful()) {
+                loading = false;
+                listener.onPageFailed(task.getException());
+                return;
+            }
+            LocalPage page = task.getResult();
+            if (page.logs.size() == pageSize || page.historyComplete) {
+                loading = false;
+                appendPage(page);
+                return;
+            }
+            loadRemotePage(requested);
+        });
+    }
+
+    // The local copy is exhausted, backfill the next older page from Firestore
+    private void loadRemotePage(int requested) {
+        if (remoteCursor != null) {
+            firebaseHelper.getUsageLogsPage(collection, userId, pageSize, remoteCursor,
+                    task -> onRemotePage(task, requested));
+        } else if (logs.isEmpty()) {
+            firebaseHelper.getUsageLogsPage(collection, userId, pageSize, (DocumentSnapshot) null,
+                    task -> onRemotePage(task, requested));
+        } else {
+            UsageLog oldest = logs.get(logs.size() - 1);
+            firebaseHelper.getUsageLogsPage(collection, userId, pageSize, oldest.getTimestamp(), oldest.getLogId(),
+                    task -> onRemotePage(task, requested));
+        }
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    private void onRemotePage(Task<QuerySnapshot> task, int requested) {
+        if (requested != generation) return;
+        if (!task.isSuccessful() || task.getResult() == null) {
+            loading = false;
+            Log.e(TAG, "Error loading page of " + collection, task.getException());
+            listener.onPageFailed(task.getException());
+            return;
+        }
+
+        List<UsageLog> fetched = new ArrayList<>();
+        for (QueryDocumentSnapshot document : task.getResult()) {
+            fetched.add(firebaseHelper.documentToUsageLog(document));
+        }
+        if (fetched.size() == pageSize) {
+            remoteCursor = task.getResult().getDocuments().get(fetched.size() - 1);
+        }
+
+        long beforeMillis = oldestLoadedMillis();
+        String beforeLogId = oldestLoadedLogId();
+        store.onDisk(() -> {
+            store.putSyncedLogs(collection, fetched);
+            if (fetched.size() < pageSize) {
+                store.setHistoryComplete(userId, collection, true);
+            }
+            return readLocalPage(beforeMillis, beforeLogId, pageSize);
+        }).addOnCompleteListener(pageTask -> {
+            if (requested != generation) return;
+            loading = false;
+            if (!pageTask.isSuccessful()) {
+                listener.onPageFailed(pageTask.getException());
+                return;
+            }
+            appendPage(pageTask.getResult());
+        });
+    }
+
+    private void appendPage(LocalPage page) {
+        int positionStart = logs.size();
+        logs.addAll(page.logs);
+        endReached = page.logs.size() < pageSize && page.historyComplete;
+        if (!page.logs.isEmpty()) {
+            listener.onLogsAppended(positionStart, page.logs.size());
+        }
+    }
+
+    private Task<LocalPage> readPage(long beforeMillis, String beforeLogId, int limit) {
+        return store.onDisk(() -> readLocalPage(beforeMillis, beforeLogId, limit));
+    }
+
+    // Runs on the store's thread
+    private LocalPage readLocalPage(long beforeMillis, String beforeLogId, int limit) {
+        return new LocalPage(store.getLogsPage(userId, collection, beforeMillis, beforeLogId, limit),
+                store.isHistoryComplete(userId, collection));
+    }
+
+    // A page read from the store, with whether the store already holds the whole history
+    private static class LocalPage {
+        final List<UsageLog> logs;
+        final boolean historyComplete;
+
+        LocalPage(List<UsageLog> logs, boolean historyComplete) {
+            this.logs = logs;
+            this.historyComplete = historyComplete;
+        }
+    }
+
+    private long oldestLoadedMillis() {
+        if (logs.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+        Timestamp oldest = logs.get(logs.size() - 1).getTimestamp();
+        return oldest != null ? oldest.toDate().getTime() : Long.MAX_VALUE;
+    }
+
+    // Tie-breaker for logs sharing oldestLoadedMillis; null if nothing is loaded yet
+    private String oldestLoadedLogId() {
+        return logs.isEmpty() ? null : logs.get(logs.size() - 1).getLogId();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.usagetracker.utils;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Calendar bucket keys shared by the rollup documents and the stats screens.
+ * Days and months follow the device time zone; weeks follow ISO-8601 (Monday start, week 1 has 4+ days).
+ * Leaderboard periods are shared by every user, so their ids are computed in UTC instead.
+ */
+public class UsagePeriods {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    public static String dayKey(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return String.format(Locale.US, "%04d-%02d-%02d",
+                calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    public static String weekKey(Date date) {
+        Calendar calendar = isoCalendar();
+        calendar.setTime(date);
+        return String.format(Locale.US, "%04d-W%02d",
+                calendar.getWeekYear(),
+                calendar.get(Calendar.WEEK_OF_YEAR));
+    }
+
+    public static String monthKey(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return String.format(Locale.US, "%04d-%02d",
+                calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH) + 1);
+    }
+
+    // Rollup document ids, e.g. "day-2025-03-14", "week-2025-W11", "month-2025-03"
+    public static String dayBucketId(Date date) {
+        return "day-" + dayKey(date);
+    }
+
+    public static String weekBucketId(Date date) {
+        return "week-" + weekKey(date);
+    }
+
+    public static String monthBucketId(Date date) {
+        return "month-" + monthKey(date);
+    }
+
+    /**
+     * leaderboardPeriods ids, same format as the rollup ids but in UTC, so a point earned at one instant
+     * lands in the same shared bucket whatever the earner's time zone, and every user reads the same
+     * current bucket.
+     */
+    public static String leaderboardWeekBucketId(Date date) {
+        Calendar calendar = isoCalendar(UTC);
+        calendar.setTime(date);
+        return String.format(Locale.US, "week-%04d-W%02d",
+                calendar.getWeekYear(),
+                calendar.get(Calendar.WEEK_OF_YEAR));
+    }
+
+    public static String leaderboardMonthBucketId(Date date) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.setTime(date);
+        return String.format(Locale.US, "month-%04d-%02d",
+                calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH) + 1);
+    }
+
+    public static Date dayStart(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return startOfDay(calendar);
+    }
+
+    // Midnight on the Monday starting the ISO week that contains date
+    public static Date weekStart(Date date) {
+        Calendar calendar = isoCalendar();
+        calendar.setTime(date);
+        calendar.set(Calendar.DAY_OF_WEEK, Calendar.MONDAY);
+        return startOfDay(calendar);
+    }
+
+    // Midnight on the first day of the month that contains date
+    public static Date monthStart(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        return startOfDay(calendar);
+    }
+
+    private static Date startOfDay(Calendar calendar) {
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+
+    public static Calendar isoCalendar() {
+        return isoCalendar(TimeZone.getDefault());
+    }
+
+    private static Calendar isoCalendar(TimeZone timeZone) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setFirstDayOfWeek(Calendar.MONDAY);
+        calendar.setMinimalDaysInFirstWeek(4);
+        return calendar;
+    }
+}
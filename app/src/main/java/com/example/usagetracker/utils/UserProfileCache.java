@@ -0,0 +1,96 @@
+package com.example.usagetracker.utils;
+
+import androidx.lifecycle.LifecycleOwner;
+
+import com.example.usagetracker.models.User;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+/**
+ * Process-wide copy of the signed-in user's users/{uid} document.
+ * get() answers synchronously for first paint; observe() keeps screens current through one shared
+ * snapshot listener (see ListenerRegistry), so moving between screens does not refetch the profile.
+ * Call from the main thread only.
+ */
+public class UserProfileCache {
+
+    public interface Observer {
+        // user is null when there is no profile document for this uid
+        void onUserChanged(User user);
+    }
+
+    private static UserProfileCache instance;
+
+    private String userId;
+    private User user;
+    private DocumentSnapshot snapshot;
+
+    public static synchronized UserProfileCache getInstance() {
+        if (instance == null) {
+            instance = new UserProfileCache();
+        }
+        return instance;
+    }
+
+    private UserProfileCache() {
+    }
+
+    // The cached profile, or null if this user has not been loaded yet in this process
+    public User get(String userId) {
+        return userId != null && userId.equals(this.userId) ? user : null;
+    }
+
+    // The document the cached profile was decoded from, for fields User does not carry (e.g. ecoPointsFoldedAt)
+    public DocumentSnapshot getSnapshot(String userId) {
+        return userId != null && userId.equals(this.userId) ? snapshot : null;
+    }
+
+    // Seeds the cache from a document a screen already fetched, e.g. LoginActivity's routing read
+    public User prime(DocumentSnapshot document) {
+        if (!document.exists()) {
+            return null;
+        }
+        if (document != snapshot) {
+            userId = document.getId();
+            snapshot = document;
+            user = DocumentCodecs.decodeUser(DocumentCodecs.dataOf(document));
+        }
+        return user;
+    }
+
+    /**
+     * Delivers the cached profile immediately if there is one, then every change until the owner stops.
+     * Screens call this from onStart.
+     */
+    public ListenerRegistration observe(LifecycleOwner owner, String userId, Observer observer) {
+        User cached = get(userId);
+        if (cached != null) {
+            observer.onUserChanged(cached);
+        }
+
+        User[] delivered = {cached};
+        return ListenerRegistry.getInstance().listen(owner,
+                FirebaseFirestore.getInstance().collection("users").document(userId),
+                (document, e) -> {
+                    if (e != null || document == null) return;
+                    if (!document.exists()) {
+                        observer.onUserChanged(null);
+                        return;
+                    }
+                    User updated = prime(document);
+                    // The registry replays the last snapshot to new subscribers; skip it if already shown
+                    if (updated != null && updated != delivered[0]) {
+                        delivered[0] = updated;
+                        observer.onUserChanged(updated);
+                    }
+                });
+    }
+
+    // Call on sign-out so the next account never sees the previous profile
+    public void clear() {
+        userId = null;
+        user = null;
+        snapshot = null;
+    }
+}
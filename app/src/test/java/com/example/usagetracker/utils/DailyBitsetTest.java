@@ -0,0 +1,156 @@
+package com.example.usagetracker.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DailyBitset around its 64-day word boundaries. Days are epoch days in the default time zone,
+ * pinned to UTC here so the month used for monthMask starts on a known day.
+ */
+public class DailyBitsetTest {
+    private TimeZone defaultZone;
+
+    @Before
+    public void pinTimeZone() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    }
+
+    @After
+    public void restoreTimeZone() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void set_lastAndFirstDayOfAdjacentWords() {
+        DailyBitset bitset = new DailyBitset();
+        assertTrue(bitset.set(63));
+        assertTrue(bitset.set(64));
+        assertFalse(bitset.set(64));
+
+        assertEquals(0, bitset.getOriginDay());
+        assertEquals(16, bitset.toBytes().length);
+        assertTrue(bitset.get(63));
+        assertTrue(bitset.get(64));
+        assertFalse(bitset.get(62));
+        assertFalse(bitset.get(65));
+        assertEquals(1, bitset.count(0, 64));
+        assertEquals(1, bitset.count(64, 128));
+        assertEquals(2, bitset.count(63, 65));
+        assertEquals(0b11L, bitset.bits(63, 2));
+        assertEquals(2, bitset.longestStreak());
+    }
+
+    @Test
+    public void set_beforeOrigin_growsBackwards() {
+        DailyBitset bitset = new DailyBitset();
+        bitset.set(200);
+        assertEquals(192, bitset.getOriginDay());
+
+        assertTrue(bitset.set(100));
+        assertEquals(64, bitset.getOriginDay());
+        assertEquals(24, bitset.toBytes().length);
+        assertTrue(bitset.get(100));
+        assertTrue(bitset.get(200));
+        assertFalse(bitset.set(200));
+        assertEquals(2, bitset.count(0, 256));
+
+        assertTrue(bitset.set(-1));
+        assertEquals(-64, bitset.getOriginDay());
+        assertTrue(bitset.get(-1));
+        assertTrue(bitset.get(200));
+        assertEquals(3, bitset.count(-64, 256));
+    }
+
+    @Test
+    public void set_negativeDayOnEmpty_alignsOriginDown() {
+        DailyBitset bitset = new DailyBitset();
+        bitset.set(-1);
+        assertEquals(-64, bitset.getOriginDay());
+        assertTrue(bitset.get(-1));
+        assertFalse(bitset.get(0));
+    }
+
+    @Test
+    public void monthMask_monthSpanningTwoWords() {
+        // 2025-01-01 is epoch day 20089, 57 days into the word starting at 20032; Jan 8 starts the next word
+        assertEquals(20089, StreakEngine.epochDay(utcDate(2025, Calendar.JANUARY, 1)));
+
+        DailyBitset bitset = new DailyBitset();
+        bitset.set(20088); // Dec 31, outside the month
+        bitset.set(20089); // Jan 1
+        bitset.set(20095); // Jan 7, last day of the first word
+        bitset.set(20096); // Jan 8, first day of the second word
+        bitset.set(20119); // Jan 31
+        bitset.set(20120); // Feb 1, outside the month
+
+        int expected = (1 << 0) | (1 << 6) | (1 << 7) | (1 << 30);
+        assertEquals(expected, bitset.monthMask(utcDate(2025, Calendar.JANUARY, 15)));
+    }
+
+    @Test
+    public void longestStreak_carriesRunsAcrossWords() {
+        DailyBitset bitset = new DailyBitset();
+        // 60..199 covers the tail of word 0, all of words 1 and 2 and the head of word 3
+        for (long day = 60; day < 200; day++) {
+            bitset.set(day);
+        }
+        // A shorter run crossing the next boundary
+        for (long day = 250; day < 260; day++) {
+            bitset.set(day);
+        }
+
+        assertEquals(140, bitset.longestStreak());
+        assertEquals(50, bitset.longestStreak(100, 150));
+        assertEquals(4, bitset.longestStreak(0, 64));
+        assertEquals(10, bitset.longestStreak(200, 300));
+    }
+
+    @Test
+    public void longestStreak_runEndingOnWordBoundary() {
+        DailyBitset bitset = new DailyBitset();
+        for (long day = 50; day < 64; day++) {
+            bitset.set(day);
+        }
+        bitset.set(66);
+
+        assertEquals(14, bitset.longestStreak());
+
+        bitset.set(64);
+        bitset.set(65);
+        assertEquals(17, bitset.longestStreak());
+    }
+
+    @Test
+    public void toBytes_roundTrips() {
+        DailyBitset bitset = new DailyBitset();
+        bitset.set(63);
+        bitset.set(64);
+        bitset.set(-5);
+
+        DailyBitset copy = DailyBitset.fromBytes(bitset.getOriginDay(), bitset.toBytes());
+        assertEquals(bitset.getOriginDay(), copy.getOriginDay());
+        assertArrayEquals(bitset.toBytes(), copy.toBytes());
+        assertTrue(copy.get(-5));
+        assertTrue(copy.get(63));
+        assertTrue(copy.get(64));
+        assertEquals(3, copy.count(-64, 128));
+    }
+
+    private static Date utcDate(int year, int month, int dayOfMonth) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month, dayOfMonth, 12, 0);
+        return calendar.getTime();
+    }
+}
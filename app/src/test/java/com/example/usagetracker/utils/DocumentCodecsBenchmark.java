@@ -0,0 +1,274 @@
+package com.example.usagetracker.utils;
+
+import com.example.usagetracker.models.UsageLog;
+import com.example.usagetracker.models.User;
+import com.google.firebase.Timestamp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * JVM micro-benchmark for DocumentCodecs against the per-field getter style of the old
+ * FirebaseHelper.documentTo* helpers. This is an approximation: DocumentSnapshot can't be built
+ * off-device, so both sides stand in for it. LegacyDocument looks each field up and converts the
+ * number per getter call, and the codec side pays for a copy of the map per row as
+ * DocumentSnapshot.getData() does; neither models the SDK's own value decoding. Timings are only
+ * printed with -DdocumentCodecs.benchmark.print=true and never asserted, so the test is not flaky on CI.
+ */
+public class DocumentCodecsBenchmark {
+    private static final int ROWS = 500;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 500;
+
+    @Test
+    public void decodeUsageLogs_matchesLegacyAndReportsTiming() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(usageLogData(i));
+        }
+
+        for (int i = 0; i < ROWS; i++) {
+            UsageLog legacy = legacyDocumentToUsageLog("log" + i, new LegacyDocument(rows.get(i)));
+            UsageLog decoded = DocumentCodecs.decodeUsageLog("log" + i, rows.get(i));
+            assertEquals(legacy.getGoalId(), decoded.getGoalId());
+            assertEquals(legacy.getType(), decoded.getType());
+            assertEquals(legacy.getUsageAmount(), decoded.getUsageAmount(), 0.0);
+            assertEquals(legacy.getTargetLimit(), decoded.getTargetLimit(), 0.0);
+            assertEquals(legacy.getTimestamp(), decoded.getTimestamp());
+            assertEquals(legacy.getEcoPointsEarned(), decoded.getEcoPointsEarned());
+            assertEquals(legacy.isMetGoal(), decoded.isMetGoal());
+        }
+        // Decoded type values share one instance instead of a copy per row
+        assertSame(DocumentCodecs.decodeUsageLog("a", rows.get(0)).getType(),
+                DocumentCodecs.decodeUsageLog("b", rows.get(2)).getType());
+
+        long legacyNanos = time(() -> {
+            for (int i = 0; i < ROWS; i++) {
+                legacyDocumentToUsageLog("log" + i, new LegacyDocument(rows.get(i)));
+            }
+        });
+        long codecNanos = time(() -> {
+            for (int i = 0; i < ROWS; i++) {
+                DocumentCodecs.decodeUsageLog("log" + i, new HashMap<>(rows.get(i)));
+            }
+        });
+        report("UsageLog decode", legacyNanos, codecNanos);
+    }
+
+    @Test
+    public void decodeUsers_matchesLegacyAndReportsTiming() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(userData(i));
+        }
+
+        for (Map<String, Object> row : rows) {
+            User legacy = legacyDocumentToUser(new LegacyDocument(row));
+            User decoded = DocumentCodecs.decodeUser(row);
+            assertEquals(legacy.getName(), decoded.getName());
+            assertEquals(legacy.getHouseholdSize(), decoded.getHouseholdSize());
+            assertEquals(legacy.getMajorAppliances(), decoded.getMajorAppliances());
+            assertEquals(legacy.getEcoPoints(), decoded.getEcoPoints());
+            assertEquals(legacy.getCurrentStreak(), decoded.getCurrentStreak());
+            assertEquals(legacy.isSetupComplete(), decoded.isSetupComplete());
+            assertEquals(legacy.getLastLoginDate(), decoded.getLastLoginDate());
+        }
+
+        long legacyNanos = time(() -> {
+            for (Map<String, Object> row : rows) {
+                legacyDocumentToUser(new LegacyDocument(row));
+            }
+        });
+        long codecNanos = time(() -> {
+            for (Map<String, Object> row : rows) {
+                DocumentCodecs.decodeUser(new HashMap<>(row));
+            }
+        });
+        report("User decode", legacyNanos, codecNanos);
+    }
+
+    @Test
+    public void encodeUsageLogs_reportsTiming() {
+        List<UsageLog> logs = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            logs.add(DocumentCodecs.decodeUsageLog("log" + i, usageLogData(i)));
+        }
+        DocumentCodecs codecs = new DocumentCodecs();
+
+        Map<String, Object> encoded = codecs.encodeUsageLog(logs.get(0), "goalId");
+        assertEquals(usageLogData(0).get("usageAmount"), encoded.get("usageAmount"));
+        assertEquals("goal0", encoded.get("goalId"));
+
+        long legacyNanos = time(() -> {
+            for (UsageLog log : logs) {
+                legacyUsageLogToMap(log);
+            }
+        });
+        long codecNanos = time(() -> {
+            for (UsageLog log : logs) {
+                codecs.encodeUsageLog(log, "goalId");
+            }
+        });
+        report("UsageLog encode", legacyNanos, codecNanos);
+    }
+
+    private static long time(Runnable round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            round.run();
+        }
+        return (System.nanoTime() - start) / MEASURED_ROUNDS;
+    }
+
+    private static void report(String name, long legacyNanos, long codecNanos) {
+        if (!Boolean.getBoolean("documentCodecs.benchmark.print")) {
+            return;
+        }
+        System.out.println(name + " x" + ROWS + ": legacy " + legacyNanos / 1000 + " us, codec "
+                + codecNanos / 1000 + " us per round");
+    }
+
+    private static Map<String, Object> usageLogData(int i) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", "user" + (i % 7));
+        data.put("goalId", "goal" + i);
+        data.put("activityName", "Shower");
+        data.put("usageAmount", 5.0 + i);
+        data.put("targetLimit", 10.0);
+        data.put("type", new String(i % 2 == 0 ? "Water" : "Electric"));
+        data.put("timestamp", new Timestamp(new Date(1700000000000L + i * 60000L)));
+        data.put("ecoPointsEarned", (long) (i % 11));
+        data.put("metGoal", i % 3 == 0);
+        return data;
+    }
+
+    private static Map<String, Object> userData(int i) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", "user" + i);
+        data.put("name", "User " + i);
+        data.put("email", "user" + i + "@example.com");
+        data.put("householdSize", (long) (1 + i % 5));
+        data.put("majorAppliances", new ArrayList<>(Arrays.asList("Fridge", "Washer", "Dryer")));
+        data.put("previousMonthWaterUsage", 1200.0);
+        data.put("previousMonthElectricityUsage", 350.5);
+        data.put("selectedGoals", new ArrayList<>(Arrays.asList("Save water", "Save money")));
+        data.put("ecoPoints", (double) (i * 3));
+        data.put("currentStreak", (long) (i % 9));
+        data.put("hasCompletedQuestionnaire", true);
+        data.put("setupComplete", i % 2 == 0);
+        data.put("lastLoginDate", 1700000000000L + i);
+        return data;
+    }
+
+    /**
+     * Stand-in for DocumentSnapshot's typed getters: every call looks the field up and boxes a
+     * converted number. Field names here have no dots, so the lookup is a single map get, like the
+     * codec side.
+     */
+    private static class LegacyDocument {
+        private final Map<String, Object> data;
+
+        LegacyDocument(Map<String, Object> data) {
+            this.data = data;
+        }
+
+        Object get(String field) {
+            return data.get(field);
+        }
+
+        String getString(String field) {
+            Object value = get(field);
+            return value instanceof String ? (String) value : null;
+        }
+
+        Double getDouble(String field) {
+            Object value = get(field);
+            return value instanceof Number ? Double.valueOf(((Number) value).doubleValue()) : null;
+        }
+
+        Long getLong(String field) {
+            Object value = get(field);
+            return value instanceof Number ? Long.valueOf(((Number) value).longValue()) : null;
+        }
+
+        Boolean getBoolean(String field) {
+            Object value = get(field);
+            return value instanceof Boolean ? (Boolean) value : null;
+        }
+    }
+
+    // The FirebaseHelper.documentToUsageLog body before DocumentCodecs
+    private static UsageLog legacyDocumentToUsageLog(String logId, LegacyDocument document) {
+        UsageLog log = new UsageLog();
+        log.setLogId(logId);
+        log.setUserId(document.getString("userId"));
+        String goalId = document.getString("goalId");
+        log.setGoalId(goalId != null ? goalId : document.getString("activityId"));
+        log.setActivityName(document.getString("activityName"));
+        log.setUsageAmount(document.getDouble("usageAmount") != null ? document.getDouble("usageAmount") : 0.0);
+        log.setType(document.getString("type"));
+        log.setTargetLimit(document.getDouble("targetLimit") != null ? document.getDouble("targetLimit") : 0.0);
+        Object timestampObj = document.get("timestamp");
+        if (timestampObj instanceof Timestamp) {
+            log.setTimestamp((Timestamp) timestampObj);
+        } else if (timestampObj instanceof Number) {
+            log.setTimestamp(new Timestamp(new Date(((Number) timestampObj).longValue())));
+        } else {
+            log.setTimestamp(new Timestamp(new Date(0)));
+        }
+        log.setEcoPointsEarned(document.getLong("ecoPointsEarned") != null ? document.getLong("ecoPointsEarned").intValue() : 0);
+        log.setMetGoal(document.getBoolean("metGoal") != null ? document.getBoolean("metGoal") : false);
+        return log;
+    }
+
+    // The FirebaseHelper.documentToUser body before DocumentCodecs
+    @SuppressWarnings("unchecked")
+    private static User legacyDocumentToUser(LegacyDocument document) {
+        User user = new User();
+        user.setUserId(document.getString("userId"));
+        user.setName(document.getString("name"));
+        user.setEmail(document.getString("email"));
+        user.setHouseholdSize(document.getLong("householdSize") != null ? document.getLong("householdSize").intValue() : 0);
+        Object appliancesObj = document.get("majorAppliances");
+        user.setMajorAppliances(appliancesObj instanceof List ? (List<String>) appliancesObj : new ArrayList<>());
+        user.setPreviousMonthWaterUsage(document.getDouble("previousMonthWaterUsage") != null ? document.getDouble("previousMonthWaterUsage") : 0.0);
+        user.setPreviousMonthElectricityUsage(document.getDouble("previousMonthElectricityUsage") != null ? document.getDouble("previousMonthElectricityUsage") : 0.0);
+        Object goalsObj = document.get("selectedGoals");
+        user.setSelectedGoals(goalsObj instanceof List ? (List<String>) goalsObj : new ArrayList<>());
+        user.setEcoPoints(document.getLong("ecoPoints") != null ? document.getLong("ecoPoints").intValue() : 0);
+        user.setCurrentStreak(document.getLong("currentStreak") != null ? document.getLong("currentStreak").intValue() : 0);
+        user.setHasCompletedQuestionnaire(document.getBoolean("hasCompletedQuestionnaire") != null ? document.getBoolean("hasCompletedQuestionnaire") : false);
+        user.setSetupComplete(document.getBoolean("setupComplete") != null ? document.getBoolean("setupComplete") : false);
+        user.setLastLoginDate(document.getLong("lastLoginDate") != null ? document.getLong("lastLoginDate") : 0);
+        return user;
+    }
+
+    // The FirebaseHelper.usageLogToMap body before DocumentCodecs
+    private static Map<String, Object> legacyUsageLogToMap(UsageLog log) {
+        Map<String, Object> logMap = new HashMap<>();
+        logMap.put("userId", log.getUserId());
+        logMap.put("goalId", log.getGoalId());
+        logMap.put("activityName", log.getActivityName());
+        logMap.put("usageAmount", log.getUsageAmount());
+        logMap.put("targetLimit", log.getTargetLimit());
+        if (log.getType() != null) {
+            logMap.put("type", log.getType());
+        }
+        logMap.put("timestamp", log.getTimestamp());
+        logMap.put("ecoPointsEarned", log.getEcoPointsEarned());
+        logMap.put("metGoal", log.isMetGoal());
+        return logMap;
+    }
+}
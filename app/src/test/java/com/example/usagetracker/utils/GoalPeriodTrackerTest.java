@@ -0,0 +1,162 @@
+package com.example.usagetracker.utils;
+
+import com.example.usagetracker.models.Goal;
+import com.example.usagetracker.models.UsageLog;
+import com.google.firebase.Timestamp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * GoalPeriodTracker and TimeRange at period boundaries. The default time zone starts out as UTC;
+ * tests that move the device to another zone switch it and @After restores the original.
+ */
+public class GoalPeriodTrackerTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone UTC_PLUS_14 = TimeZone.getTimeZone("GMT+14:00");
+
+    private TimeZone defaultZone;
+    private int nextLogId;
+
+    @Before
+    public void pinTimeZone() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(UTC);
+    }
+
+    @After
+    public void restoreTimeZone() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void timeRange_isHalfOpen() {
+        TimeRange day = TimeRange.dayOf(utc(2025, Calendar.JANUARY, 5, 10));
+
+        assertEquals(utc(2025, Calendar.JANUARY, 5, 0).getTime(), day.getStartMillis());
+        assertEquals(utc(2025, Calendar.JANUARY, 6, 0).getTime(), day.getEndMillis());
+        assertTrue(day.contains(day.getStart()));
+        assertTrue(day.contains(new Timestamp(new Date(day.getEndMillis() - 1))));
+        assertFalse(day.contains(day.getEnd()));
+    }
+
+    @Test
+    public void timeRange_weekAndMonthEndAtNextPeriodStart() {
+        // Sunday 2025-01-05 closes the ISO week that began Monday 2024-12-30
+        TimeRange week = TimeRange.weekOf(utc(2025, Calendar.JANUARY, 5, 23));
+        assertEquals(utc(2024, Calendar.DECEMBER, 30, 0).getTime(), week.getStartMillis());
+        assertEquals(utc(2025, Calendar.JANUARY, 6, 0).getTime(), week.getEndMillis());
+        assertFalse(week.contains(week.getEnd()));
+
+        TimeRange month = TimeRange.monthOf(utc(2025, Calendar.JANUARY, 31, 23));
+        assertEquals(utc(2025, Calendar.JANUARY, 1, 0).getTime(), month.getStartMillis());
+        assertEquals(utc(2025, Calendar.FEBRUARY, 1, 0).getTime(), month.getEndMillis());
+        assertFalse(month.contains(month.getEnd()));
+    }
+
+    @Test
+    public void addLogs_logAtWindowEnd_isNotCounted() {
+        GoalPeriodTracker tracker = new GoalPeriodTracker();
+        tracker.setGoals(Collections.singletonList(goal("daily", "Daily")));
+        Date now = utc(2025, Calendar.JANUARY, 5, 10);
+
+        tracker.addLogs(Arrays.asList(
+                log("daily", 1.0, utc(2025, Calendar.JANUARY, 5, 0)),
+                log("daily", 2.0, utc(2025, Calendar.JANUARY, 6, 0))), now);
+
+        assertEquals(1.0, tracker.getCurrentTotals(now).get("daily"), 0.0);
+    }
+
+    @Test
+    public void getCurrentTotals_weeklyWindowRollsOverAtWeekBoundary() {
+        GoalPeriodTracker tracker = new GoalPeriodTracker();
+        tracker.setGoals(Arrays.asList(goal("weekly", GoalPeriodTracker.FREQUENCY_WEEKLY), goal("daily", "Daily")));
+        Date sunday = utc(2025, Calendar.JANUARY, 5, 23);
+        tracker.addLogs(Arrays.asList(
+                log("weekly", 3.0, utc(2025, Calendar.JANUARY, 1, 8)),
+                log("weekly", 4.0, sunday)), sunday);
+        assertEquals(7.0, tracker.getCurrentTotals(sunday).get("weekly"), 0.0);
+
+        Date monday = utc(2025, Calendar.JANUARY, 6, 1);
+        assertFalse(tracker.resetIfWindowsShifted(monday));
+        assertEquals(0.0, tracker.getCurrentTotals(monday).get("weekly"), 0.0);
+
+        tracker.addLogs(Collections.singletonList(log("weekly", 5.0, monday)), monday);
+        assertEquals(5.0, tracker.getCurrentTotals(monday).get("weekly"), 0.0);
+    }
+
+    @Test
+    public void getCurrentTotals_dailyWindowRollsOverAtMonthBoundary() {
+        GoalPeriodTracker tracker = new GoalPeriodTracker();
+        tracker.setGoals(Collections.singletonList(goal("daily", "Daily")));
+        Date lastOfMonth = utc(2025, Calendar.JANUARY, 31, 20);
+        tracker.addLogs(Collections.singletonList(log("daily", 2.5, lastOfMonth)), lastOfMonth);
+        assertEquals(2.5, tracker.getCurrentTotals(lastOfMonth).get("daily"), 0.0);
+
+        Date firstOfMonth = utc(2025, Calendar.FEBRUARY, 1, 1);
+        assertFalse(tracker.resetIfWindowsShifted(firstOfMonth));
+        assertEquals(0.0, tracker.getCurrentTotals(firstOfMonth).get("daily"), 0.0);
+    }
+
+    @Test
+    public void resetIfWindowsShifted_timeZoneChangeAcrossWeekBoundary() {
+        GoalPeriodTracker tracker = new GoalPeriodTracker();
+        tracker.setGoals(Collections.singletonList(goal("weekly", GoalPeriodTracker.FREQUENCY_WEEKLY)));
+        // Sunday 10:00 in UTC is already Monday in UTC+14, so the week starts inside the counted one
+        Date now = utc(2025, Calendar.JANUARY, 5, 10);
+        tracker.addLogs(Collections.singletonList(log("weekly", 4.0, utc(2025, Calendar.JANUARY, 2, 12))), now);
+        assertEquals(4.0, tracker.getCurrentTotals(now).get("weekly"), 0.0);
+
+        TimeZone.setDefault(UTC_PLUS_14);
+        assertTrue(tracker.resetIfWindowsShifted(now));
+        assertEquals(0.0, tracker.getCurrentTotals(now).get("weekly"), 0.0);
+        assertEquals(utc(2025, Calendar.JANUARY, 5, 10).getTime(), tracker.getFeedFromMillis(now));
+    }
+
+    @Test
+    public void resetIfWindowsShifted_timeZoneChangeAcrossMonthBoundary() {
+        GoalPeriodTracker tracker = new GoalPeriodTracker();
+        tracker.setGoals(Collections.singletonList(goal("daily", "Daily")));
+        // Jan 31 12:00 in UTC is Feb 1 02:00 in UTC+14
+        Date now = utc(2025, Calendar.JANUARY, 31, 12);
+        tracker.addLogs(Collections.singletonList(log("daily", 1.5, utc(2025, Calendar.JANUARY, 31, 6))), now);
+        assertEquals(1.5, tracker.getCurrentTotals(now).get("daily"), 0.0);
+
+        TimeZone.setDefault(UTC_PLUS_14);
+        assertEquals(utc(2025, Calendar.JANUARY, 31, 10).getTime(),
+                tracker.windowFor(goal("daily", "Daily"), now).getStartMillis());
+        assertTrue(tracker.resetIfWindowsShifted(now));
+        assertEquals(0.0, tracker.getCurrentTotals(now).get("daily"), 0.0);
+    }
+
+    private static Goal goal(String goalId, String frequency) {
+        Goal goal = new Goal("user", goalId, 10.0, "Water", frequency, "L");
+        goal.setGoalId(goalId);
+        return goal;
+    }
+
+    private UsageLog log(String goalId, double amount, Date time) {
+        UsageLog log = new UsageLog("user", goalId, goalId, amount, "Water");
+        log.setLogId("log" + nextLogId++);
+        log.setTimestamp(new Timestamp(time));
+        return log;
+    }
+
+    private static Date utc(int year, int month, int dayOfMonth, int hour) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.clear();
+        calendar.set(year, month, dayOfMonth, hour, 0);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.usagetracker.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * StreakEngine.apply one log at a time from a State built in memory, with the default time zone
+ * pinned to UTC so epoch day n is simply noon of the nth day after 1970-01-01.
+ */
+public class StreakEngineTest {
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void pinTimeZone() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    }
+
+    @After
+    public void restoreTimeZone() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void apply_consecutiveMetDays_extendStreak() {
+        StreakEngine.State state = new StreakEngine.State();
+        assertTrue(StreakEngine.apply(state, day(10), true));
+        assertTrue(StreakEngine.apply(state, day(11), true));
+        assertTrue(StreakEngine.apply(state, day(12), true));
+
+        assertEquals(3, state.streak);
+        assertEquals(12, state.lastMetDay);
+        assertEquals(3, state.currentStreak(day(13)));
+        // A whole day without a met log
+        assertEquals(0, state.currentStreak(day(14)));
+    }
+
+    @Test
+    public void apply_missOnLatestDay_resetsStreak() {
+        StreakEngine.State state = new StreakEngine.State();
+        StreakEngine.apply(state, day(10), true);
+        StreakEngine.apply(state, day(11), true);
+        StreakEngine.apply(state, day(12), true);
+
+        // A miss backfilled onto an earlier day leaves the streak alone
+        assertFalse(StreakEngine.apply(state, day(11), false));
+        assertEquals(3, state.streak);
+
+        assertFalse(StreakEngine.apply(state, day(13), false));
+        assertEquals(0, state.streak);
+        assertEquals(0, state.currentStreak(day(13)));
+
+        assertTrue(StreakEngine.apply(state, day(14), true));
+        assertEquals(1, state.streak);
+        assertEquals(14, state.lastMetDay);
+    }
+
+    @Test
+    public void apply_backfillIntoOneDayGap_joinsRuns() {
+        StreakEngine.State state = new StreakEngine.State();
+        StreakEngine.apply(state, day(1), true);
+        StreakEngine.apply(state, day(2), true);
+        StreakEngine.apply(state, day(3), true);
+        // Day 4 is skipped, so day 5 starts a new run and keeps 1..3 aside
+        StreakEngine.apply(state, day(5), true);
+        StreakEngine.apply(state, day(6), true);
+        assertEquals(2, state.streak);
+        assertEquals(3, state.prevRunEnd);
+        assertEquals(3, state.prevRunLength);
+
+        StreakEngine.apply(state, day(4), true);
+
+        assertEquals(6, state.streak);
+        assertEquals(6, state.lastMetDay);
+        assertEquals(-1, state.prevRunEnd);
+        assertEquals(0, state.prevRunLength);
+    }
+
+    @Test
+    public void apply_backfillBeforeRun_extendsWithoutJoining() {
+        StreakEngine.State state = new StreakEngine.State();
+        StreakEngine.apply(state, day(1), true);
+        // Two missing days, 2 and 3
+        StreakEngine.apply(state, day(4), true);
+        StreakEngine.apply(state, day(5), true);
+
+        StreakEngine.apply(state, day(3), true);
+        assertEquals(3, state.streak);
+        assertEquals(1, state.prevRunEnd);
+
+        StreakEngine.apply(state, day(2), true);
+        assertEquals(5, state.streak);
+    }
+
+    @Test
+    public void apply_paysBonusOncePerDay() {
+        StreakEngine.State state = new StreakEngine.State();
+        assertTrue(StreakEngine.apply(state, day(10), true));
+        assertFalse(StreakEngine.apply(state, day(10), true));
+
+        // A miss resets the streak; meeting a goal again the same day restarts it without a second bonus
+        StreakEngine.apply(state, day(10), false);
+        assertFalse(StreakEngine.apply(state, day(10), true));
+        assertEquals(1, state.streak);
+        assertEquals(10, state.lastBonusDay);
+
+        assertTrue(StreakEngine.apply(state, day(11), true));
+        assertEquals(2, state.streak);
+        assertEquals(11, state.lastBonusDay);
+    }
+
+    @Test
+    public void apply_backfilledDay_paysNoBonus() {
+        StreakEngine.State state = new StreakEngine.State();
+        StreakEngine.apply(state, day(5), true);
+        StreakEngine.apply(state, day(6), true);
+
+        // Extends the run, but the bonus was already paid for a later day
+        assertFalse(StreakEngine.apply(state, day(4), true));
+        assertEquals(3, state.streak);
+        assertEquals(6, state.lastBonusDay);
+    }
+
+    private static Date day(long epochDay) {
+        return new Date(epochDay * DAY_MS + DAY_MS / 2);
+    }
+}